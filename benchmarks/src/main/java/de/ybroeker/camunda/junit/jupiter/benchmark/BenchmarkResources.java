@@ -0,0 +1,56 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.builder.AbstractFlowNodeBuilder;
+
+/**
+ * Generates deterministic BPMN resources, so all runs of a benchmark deploy identical resources.
+ */
+final class BenchmarkResources {
+
+    static final String CONFIGURATION_RESOURCE = "camunda.cfg.xml";
+
+    private BenchmarkResources() {
+        throw new AssertionError("No BenchmarkResources instances for you!");
+    }
+
+    /**
+     * Returns {@code count} processes named {@code process<n>.bpmn}, each a sequence of {@code userTasks} user tasks.
+     * The ids of the tasks start with {@code taskPrefix}, so different prefixes define the same processes with
+     * different content.
+     */
+    static Map<String, byte[]> processes(final int count, final int userTasks, final String taskPrefix) {
+        final Map<String, byte[]> resources = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            resources.put("process" + i + ".bpmn", process("process" + i, userTasks, taskPrefix));
+        }
+        return resources;
+    }
+
+    private static byte[] process(final String key, final int userTasks, final String taskPrefix) {
+        AbstractFlowNodeBuilder<?, ?> builder = Bpmn.createExecutableProcess(key).startEvent();
+        for (int i = 0; i < userTasks; i++) {
+            builder = builder.userTask(taskPrefix + i);
+        }
+        return Bpmn.convertToString(builder.endEvent().done()).getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.benchmark;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEnginePool;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.test.TestHelper;
+import org.camunda.bpm.engine.repository.Deployment;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the cleanup after a test, which deployed one process through the deployment cache and started
+ * {@code processInstances} instances, on an engine leased exclusively from a pool like the extension does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "--add-opens", "java.base/java.util=ALL-UNNAMED"})
+public class CleanupBenchmark {
+
+    private static final String PROCESS_KEY = "process0";
+
+    @Param({"1", "10", "100"})
+    public int processInstances;
+
+    private ProcessEnginePool pool;
+
+    private ProcessEnginePool.Lease lease;
+
+    private ProcessEngine processEngine;
+
+    private Map<String, byte[]> resources;
+
+    private Deployment deployment;
+
+    @Setup(Level.Trial)
+    public void leaseProcessEngine() {
+        pool = ProcessEnginePool.create(
+                ProcessEnginePool.Options.configurationResource(BenchmarkResources.CONFIGURATION_RESOURCE));
+        lease = pool.lease();
+        processEngine = lease.getProcessEngine();
+        lease.takeDatabaseSnapshot();
+        resources = BenchmarkResources.processes(1, 3, "task");
+    }
+
+    @Setup(Level.Invocation)
+    public void runTest() {
+        deployment = lease.getDeploymentCache().deploy("benchmark", resources);
+        //only the entities of this invocation
+        lease.getCreatedEntityTracker().drain();
+        for (int i = 0; i < processInstances; i++) {
+            processEngine.getRuntimeService().startProcessInstanceByKey(PROCESS_KEY);
+        }
+    }
+
+    /**
+     * Cleanup of a cached deployment, which stays deployed, only the entities created by the test are deleted.
+     */
+    @Benchmark
+    public boolean deleteCreatedEntities() {
+        final boolean removed = lease.getCreatedEntityTracker().drain().delete(processEngine);
+        lease.getDeploymentCache().evictIfModified(deployment);
+        return removed;
+    }
+
+    /**
+     * Cleanup of a deployment, which is deleted with all its instances.
+     */
+    @Benchmark
+    public void deleteDeployment() {
+        processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+    }
+
+    /**
+     * Cleanup after a test annotated with {@link de.ybroeker.camunda.junit.jupiter.EnsureCleanAfterTest}.
+     */
+    @Benchmark
+    public void ensureCleanAfterTest() {
+        deleteCreatedEntities();
+        lease.getDeploymentCache().clear();
+        TestHelper.assertAndEnsureCleanDbAndCache(processEngine);
+        lease.reset();
+    }
+
+    /**
+     * Resetting the engine without deleting anything first.
+     */
+    @Benchmark
+    public void resetProcessEngine() {
+        lease.reset();
+    }
+
+    @TearDown(Level.Invocation)
+    public void forgetDeletedDeployment() {
+        final long remaining = processEngine.getRepositoryService().createDeploymentQuery()
+                .deploymentId(deployment.getId())
+                .count();
+        if (remaining == 0) {
+            lease.getDeploymentCache().invalidate();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeProcessEngine() {
+        lease.close();
+        pool.close();
+    }
+
+}
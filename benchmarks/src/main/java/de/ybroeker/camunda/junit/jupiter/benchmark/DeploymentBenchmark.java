@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.benchmark;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import de.ybroeker.camunda.junit.jupiter.impl.DeploymentCache;
+import de.ybroeker.camunda.junit.jupiter.impl.Deployments;
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEnginePool;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.repository.Deployment;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures deploying the resources of a test, with varying number and size of resources, on an engine leased
+ * exclusively from a pool like the extension does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "--add-opens", "java.base/java.util=ALL-UNNAMED"})
+public class DeploymentBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int resourceCount;
+
+    @Param({"1", "25"})
+    public int userTasksPerProcess;
+
+    private ProcessEnginePool pool;
+
+    private ProcessEnginePool.Lease lease;
+
+    private ProcessEngine processEngine;
+
+    private Map<String, byte[]> resources;
+
+    /**
+     * The same processes as {@link #resources} with different content, so each deployment evicts the other.
+     */
+    private Map<String, byte[]> modifiedResources;
+
+    private boolean deployModified;
+
+    private DeploymentCache deploymentCache;
+
+    private Deployment deployment;
+
+    @Setup(Level.Trial)
+    public void leaseProcessEngine() {
+        pool = ProcessEnginePool.create(
+                ProcessEnginePool.Options.configurationResource(BenchmarkResources.CONFIGURATION_RESOURCE));
+        lease = pool.lease();
+        processEngine = lease.getProcessEngine();
+        resources = BenchmarkResources.processes(resourceCount, userTasksPerProcess, "task");
+        modifiedResources = BenchmarkResources.processes(resourceCount, userTasksPerProcess, "modifiedTask");
+        deploymentCache = lease.getDeploymentCache();
+        deploymentCache.deploy("cached", resources);
+    }
+
+    @Benchmark
+    public String fingerprint() {
+        return Deployments.fingerprint(resources);
+    }
+
+    @Benchmark
+    public Deployment deploy() {
+        deployment = Deployments.deploy(processEngine, "benchmark", resources);
+        return deployment;
+    }
+
+    /**
+     * A test deploying the same resources as a previous one.
+     */
+    @Benchmark
+    public Deployment deployCacheHit() {
+        return deploymentCache.deploy("benchmark", resources);
+    }
+
+    /**
+     * A test deploying modified resources of a previous one, which evicts the cached deployment of the previous one.
+     */
+    @Benchmark
+    public Deployment deployCacheMiss() {
+        deployModified = !deployModified;
+        return deploymentCache.deploy("benchmark", deployModified ? modifiedResources : resources);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteDeployment() {
+        if (deployment != null) {
+            processEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+            deployment = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeProcessEngine() {
+        lease.close();
+        pool.close();
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEngineFactory;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures building a new engine, as done for each engine of the pool.
+ * The first engine of the JVM creates the schema template, so it is built during setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ProcessEngineBootstrapBenchmark {
+
+    @Param({"true", "false"})
+    public boolean schemaTemplateEnabled;
+
+    private ProcessEngine processEngine;
+
+    @Setup(Level.Trial)
+    public void createSchemaTemplate() {
+        new ProcessEngineFactory(BenchmarkResources.CONFIGURATION_RESOURCE, true).get().close();
+    }
+
+    @Benchmark
+    public ProcessEngine buildProcessEngine() {
+        processEngine = new ProcessEngineFactory(BenchmarkResources.CONFIGURATION_RESOURCE, schemaTemplateEnabled).get();
+        return processEngine;
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeProcessEngine() {
+        if (processEngine != null) {
+            processEngine.close();
+            processEngine = null;
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+
+import de.ybroeker.camunda.junit.jupiter.impl.Deployments;
+import org.junit.jupiter.api.MethodDescriptor;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.MethodOrdererContext;
+
+/**
+ * {@link MethodOrderer}, which runs tests deploying the same resources back to back, so their deployment is reused
+ * and the engine's definition caches stay warm.
+ * <p>
+ * Groups keep the order of their first test, tests within a group keep their relative order.
+ * <pre>
+ * &#64;TestMethodOrder(DeploymentMethodOrderer.class)
+ * </pre>
+ */
+public class DeploymentMethodOrderer implements MethodOrderer {
+
+    public DeploymentMethodOrderer() {
+        //instantiated by JUnit
+    }
+
+    @Override
+    public void orderMethods(final MethodOrdererContext context) {
+        final Map<String, Integer> groups = new HashMap<>();
+        final Map<MethodDescriptor, Integer> groupOfMethod = new IdentityHashMap<>();
+        for (final MethodDescriptor methodDescriptor : context.getMethodDescriptors()) {
+            final String fingerprint = Deployments.fingerprint(context.getTestClass(), methodDescriptor.getMethod());
+            final Integer group = groups.computeIfAbsent(fingerprint, key -> groups.size());
+            groupOfMethod.put(methodDescriptor, group);
+        }
+
+        context.getMethodDescriptors().sort(Comparator.comparing(groupOfMethod::get));
+    }
+
+}
@@ -15,5 +15,15 @@
  */
 package de.ybroeker.camunda.junit.jupiter;
 
+import java.lang.annotation.*;
+
+/**
+ * Asserts that the database is clean after the annotated test and resets the process engine afterwards.
+ *
+ * @see ProcessEngineExtension#DATABASE_SNAPSHOT_ENABLED_PROPERTY
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Documented
 public @interface EnsureCleanAfterTest {
 }
@@ -0,0 +1,338 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.stream.*;
+
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.delegate.DelegateTask;
+import org.camunda.bpm.engine.delegate.ExecutionListener;
+import org.camunda.bpm.engine.delegate.TaskListener;
+
+/**
+ * Records execution and task listener events into a preallocated ring buffer, e.g. for a process application
+ * created by {@link TestProcessApplicationUtil#processApplication(EventRecorder)}.
+ * <p>
+ * Recording allocates nothing and takes no locks, so it is safe for many concurrently running process instances
+ * and hardly distorts load tests. Once the buffer is full, the oldest events are overwritten. Each slot is written
+ * by one writer at a time, a writer only waits if the buffer wrapped around while another event of its slot is
+ * written. An event is dropped, if a newer one was already written to its slot.
+ * The recorded events are read afterwards by {@link #getEvents()} or {@link #query()}.
+ */
+public final class EventRecorder implements ExecutionListener, TaskListener {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Sequence of the event in each slot, {@value #WRITING} while the slot is written.
+     */
+    private static final long WRITING = Long.MIN_VALUE;
+
+    private static final long EMPTY = -1;
+
+    private final int mask;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicReferenceArray<Source> sources;
+
+    private final AtomicReferenceArray<String> types;
+
+    private final AtomicReferenceArray<String> activityIds;
+
+    private final AtomicReferenceArray<String> processInstanceIds;
+
+    private final AtomicLongArray timestamps;
+
+    public EventRecorder() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximal number of kept events, rounded up to the next power of two
+     */
+    public EventRecorder(final int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, but was " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        clearSequences();
+        this.sources = new AtomicReferenceArray<>(size);
+        this.types = new AtomicReferenceArray<>(size);
+        this.activityIds = new AtomicReferenceArray<>(size);
+        this.processInstanceIds = new AtomicReferenceArray<>(size);
+        this.timestamps = new AtomicLongArray(size);
+    }
+
+    /**
+     * Records {@code start} and {@code end} events with the id of the current activity,
+     * {@code take} events with the id of the taken sequence flow.
+     * The start of the process instance itself is recorded with the id of its start event.
+     */
+    @Override
+    public void notify(final DelegateExecution execution) {
+        final String activityId = ExecutionListener.EVENTNAME_TAKE.equals(execution.getEventName())
+                                  ? execution.getCurrentTransitionId()
+                                  : execution.getCurrentActivityId();
+        record(Source.EXECUTION, execution.getEventName(), activityId, execution.getProcessInstanceId());
+    }
+
+    /**
+     * Records task events with the task definition key as activity id.
+     */
+    @Override
+    public void notify(final DelegateTask delegateTask) {
+        record(Source.TASK, delegateTask.getEventName(), delegateTask.getTaskDefinitionKey(),
+               delegateTask.getProcessInstanceId());
+    }
+
+    private void record(final Source source, final String type, final String activityId,
+                        final String processInstanceId) {
+        final long eventSequence = sequence.getAndIncrement();
+        final int slot = (int) eventSequence & mask;
+        //claimed by one writer at a time, an event older than the one in the slot is overwritten right away
+        long slotSequence;
+        do {
+            slotSequence = sequences.get(slot);
+            if (slotSequence > eventSequence) {
+                return;
+            }
+            if (slotSequence == WRITING) {
+                Thread.yield();
+            }
+        } while (slotSequence == WRITING || !sequences.compareAndSet(slot, slotSequence, WRITING));
+        sources.set(slot, source);
+        types.set(slot, type);
+        activityIds.set(slot, activityId);
+        processInstanceIds.set(slot, processInstanceId);
+        timestamps.set(slot, System.nanoTime());
+        sequences.set(slot, eventSequence);
+    }
+
+    /**
+     * Returns the number of events recorded since creation or the last {@link #clear()},
+     * including overwritten ones.
+     */
+    public long getRecordedCount() {
+        return sequence.get();
+    }
+
+    /**
+     * Returns the number of events, which were overwritten because the buffer was full.
+     */
+    public long getOverwrittenCount() {
+        return Math.max(0, sequence.get() - (mask + 1));
+    }
+
+    /**
+     * Returns the kept events in the order they were recorded.
+     * Events written while reading are skipped.
+     */
+    public List<Event> getEvents() {
+        final long end = sequence.get();
+        final long start = Math.max(0, end - (mask + 1));
+        final List<Event> events = new ArrayList<>((int) (end - start));
+        for (long eventSequence = start; eventSequence < end; eventSequence++) {
+            final int slot = (int) eventSequence & mask;
+            if (sequences.get(slot) != eventSequence) {
+                continue;
+            }
+            final Event event = new Event(eventSequence, sources.get(slot), types.get(slot),
+                                          activityIds.get(slot), processInstanceIds.get(slot),
+                                          timestamps.get(slot));
+            if (sequences.get(slot) == eventSequence) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    public Query query() {
+        return new Query();
+    }
+
+    /**
+     * Discards all recorded events. Must not be called while events are recorded.
+     */
+    public void clear() {
+        clearSequences();
+        sequence.set(0);
+    }
+
+    private void clearSequences() {
+        for (int slot = 0; slot <= mask; slot++) {
+            sequences.set(slot, EMPTY);
+        }
+    }
+
+    public enum Source {
+        EXECUTION, TASK
+    }
+
+    /**
+     * A recorded listener event.
+     */
+    public static final class Event {
+
+        private final long sequence;
+
+        private final Source source;
+
+        private final String type;
+
+        private final String activityId;
+
+        private final String processInstanceId;
+
+        private final long timestamp;
+
+        private Event(final long sequence, final Source source, final String type, final String activityId,
+                      final String processInstanceId, final long timestamp) {
+            this.sequence = sequence;
+            this.source = source;
+            this.type = type;
+            this.activityId = activityId;
+            this.processInstanceId = processInstanceId;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * Returns the position of the event in the order of recording.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * Returns the event name, e.g. {@link ExecutionListener#EVENTNAME_START} or
+         * {@link TaskListener#EVENTNAME_CREATE}.
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Returns the id of the activity, of the sequence flow for {@code take} events,
+         * or the task definition key for task events.
+         */
+        public String getActivityId() {
+            return activityId;
+        }
+
+        public String getProcessInstanceId() {
+            return processInstanceId;
+        }
+
+        /**
+         * Returns the time of the event, as {@link System#nanoTime()}.
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return source + " " + type + " " + activityId + " [" + processInstanceId + "]";
+        }
+    }
+
+    /**
+     * Query for recorded events, all criteria must match.
+     */
+    public final class Query {
+
+        private Predicate<Event> criteria = event -> true;
+
+        private Query() {
+        }
+
+        public Query source(final Source source) {
+            return matching(event -> event.getSource() == source);
+        }
+
+        public Query executionEvents() {
+            return source(Source.EXECUTION);
+        }
+
+        public Query taskEvents() {
+            return source(Source.TASK);
+        }
+
+        public Query type(final String type) {
+            return matching(event -> type.equals(event.getType()));
+        }
+
+        public Query activityId(final String activityId) {
+            return matching(event -> activityId.equals(event.getActivityId()));
+        }
+
+        public Query processInstanceId(final String processInstanceId) {
+            return matching(event -> processInstanceId.equals(event.getProcessInstanceId()));
+        }
+
+        public Query matching(final Predicate<Event> predicate) {
+            criteria = criteria.and(predicate);
+            return this;
+        }
+
+        public List<Event> list() {
+            return stream().collect(Collectors.toList());
+        }
+
+        public long count() {
+            return stream().count();
+        }
+
+        /**
+         * Returns the activity ids of all matching events in the order of recording.
+         */
+        public List<String> activityIds() {
+            return stream().map(Event::getActivityId).collect(Collectors.toList());
+        }
+
+        /**
+         * Asserts, that exactly {@code expected} events match.
+         *
+         * @throws AssertionError if the number of matching events differs
+         */
+        public Query assertCount(final long expected) {
+            final long actual = count();
+            if (actual != expected) {
+                throw new AssertionError("Expected " + expected + " recorded events, but found " + actual + ": "
+                                         + list());
+            }
+            return this;
+        }
+
+        private Stream<Event> stream() {
+            return getEvents().stream().filter(criteria);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.camunda.bpm.engine.impl.cfg.IdGenerator;
+
+/**
+ * Lock-free {@link IdGenerator}, which generates ids in memory instead of reserving blocks of ids in the
+ * {@code ACT_GE_PROPERTY} table like Camunda's {@link org.camunda.bpm.engine.impl.db.DbIdGenerator}.
+ * <p>
+ * Ids consist of a prefix and a sequence number, e.g. {@code 1f3a9c2e-17}.
+ * Before each test the extension {@link #reset(String) resets} the generator of the test's engine
+ * to a prefix derived from the test, so a test generates the same ids in every run, and
+ * {@link #release(String) releases} it afterwards.
+ * <p>
+ * Engines built by {@link ProcessEngineExtension#builder()} use it by default,
+ * other configurations can set it as {@code idGenerator} of the engine configuration.
+ */
+public final class InMemoryIdGenerator implements IdGenerator {
+
+    private final AtomicReference<Sequence> sequence = new AtomicReference<>(new Sequence(""));
+
+    /**
+     * Sequences of all scopes, which were reset to and not released yet. Guarded by {@code this}.
+     */
+    private final Map<String, Sequence> sequences = new HashMap<>();
+
+    /**
+     * Number of prefixes handed out for each hash code of their scopes. Guarded by {@code this}.
+     * Kept after their scopes are released, ids may outlive their test, e.g. in cached deployments.
+     */
+    private final Map<Integer, Integer> prefixCounts = new HashMap<>();
+
+    public InMemoryIdGenerator() {
+    }
+
+    @Override
+    public String getNextId() {
+        return sequence.get().next();
+    }
+
+    /**
+     * Continues the sequence of {@code scope}, or starts it with a prefix derived from {@code scope}.
+     * Ids of different scopes are distinct, even if their hash codes collide, and a scope gets the same prefix in
+     * every run, as long as colliding scopes are reset in the same order.
+     *
+     * @param scope the scope of the following ids, e.g. the unique id of a test
+     */
+    public void reset(final String scope) {
+        sequence.set(getSequence(scope));
+    }
+
+    /**
+     * Forgets the sequence of {@code scope}, e.g. when its test ended. Resetting to the scope again starts a sequence
+     * with a new prefix, so it doesn't repeat ids of the released one.
+     */
+    public synchronized void release(final String scope) {
+        sequences.remove(scope);
+    }
+
+    private synchronized Sequence getSequence(final String scope) {
+        return sequences.computeIfAbsent(scope, key -> {
+            final int hashCode = key.hashCode();
+            final int count = prefixCounts.merge(hashCode, 1, Integer::sum);
+            final String hash = Integer.toHexString(hashCode);
+            return new Sequence(count == 1 ? hash + "-" : hash + "." + (count - 1) + "-");
+        });
+    }
+
+    private static final class Sequence {
+
+        private final String prefix;
+
+        private final AtomicLong value = new AtomicLong();
+
+        private Sequence(final String prefix) {
+            this.prefix = prefix;
+        }
+
+        private String next() {
+            return prefix + value.incrementAndGet();
+        }
+    }
+
+}
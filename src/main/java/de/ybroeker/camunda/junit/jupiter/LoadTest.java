@@ -0,0 +1,55 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.lang.annotation.*;
+
+/**
+ * Configures the {@link LoadTestRunner} injected into the annotated test.
+ *
+ * @see LoadTestRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+@Documented
+public @interface LoadTest {
+
+    /**
+     * The number of measured process instances.
+     */
+    int instances() default 100;
+
+    /**
+     * The number of process instances started before measuring, to warm up caches and the JIT.
+     */
+    int warmUpInstances() default 10;
+
+    /**
+     * The number of threads driving process instances concurrently.
+     */
+    int concurrency() default 4;
+
+    /**
+     * If user tasks of each instance are completed until the instance doesn't have any left.
+     */
+    boolean completeUserTasks() default true;
+
+    /**
+     * If jobs of each instance are executed until the instance doesn't have any left.
+     */
+    boolean executeJobs() default true;
+
+}
@@ -0,0 +1,121 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.time.Duration;
+import java.util.*;
+
+import de.ybroeker.camunda.junit.jupiter.impl.LatencyHistogram;
+
+/**
+ * Throughput and latency of the process instances driven by a {@link LoadTestRunner}.
+ * Latency is measured per instance, from its start until it has no user tasks or jobs left to complete.
+ */
+public final class LoadTestResult {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final String processDefinitionKey;
+
+    private final LatencyHistogram latencies;
+
+    private final Duration duration;
+
+    LoadTestResult(final String processDefinitionKey, final LatencyHistogram latencies, final Duration duration) {
+        this.processDefinitionKey = processDefinitionKey;
+        this.latencies = latencies;
+        this.duration = duration;
+    }
+
+    public String getProcessDefinitionKey() {
+        return processDefinitionKey;
+    }
+
+    public long getInstances() {
+        return latencies.getCount();
+    }
+
+    /**
+     * Returns the wall-clock time of the measured instances.
+     */
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Returns the completed instances per second.
+     */
+    public double getThroughput() {
+        final long nanos = duration.toNanos();
+        return nanos == 0 ? 0 : getInstances() * NANOS_PER_SECOND / nanos;
+    }
+
+    /**
+     * Returns the latency below or at which {@code percentile} percent of all instances completed.
+     *
+     * @param percentile the percentile, between 0 and 100
+     */
+    public Duration getPercentile(final double percentile) {
+        return Duration.ofNanos(latencies.getPercentile(percentile));
+    }
+
+    public Duration getP50() {
+        return getPercentile(50);
+    }
+
+    public Duration getP99() {
+        return getPercentile(99);
+    }
+
+    public Duration getP999() {
+        return getPercentile(99.9);
+    }
+
+    public Duration getMean() {
+        return Duration.ofNanos(latencies.getMean());
+    }
+
+    public Duration getMax() {
+        return Duration.ofNanos(latencies.getMax());
+    }
+
+    /**
+     * Returns the result as JUnit report entry.
+     */
+    Map<String, String> toReportEntry() {
+        final Map<String, String> entry = new LinkedHashMap<>();
+        entry.put("loadTest.processDefinitionKey", processDefinitionKey);
+        entry.put("loadTest.instances", String.valueOf(getInstances()));
+        entry.put("loadTest.throughput", String.format(Locale.ROOT, "%.1f/s", getThroughput()));
+        entry.put("loadTest.p50", millis(getP50()));
+        entry.put("loadTest.p99", millis(getP99()));
+        entry.put("loadTest.p999", millis(getP999()));
+        entry.put("loadTest.max", millis(getMax()));
+        return entry;
+    }
+
+    private static String millis(final Duration duration) {
+        return String.format(Locale.ROOT, "%.3f ms", duration.toNanos() / 1_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%s: %d instances in %s, %.1f/s, p50 %s, p99 %s, p999 %s, max %s",
+                             processDefinitionKey, getInstances(), millis(duration), getThroughput(),
+                             millis(getP50()), millis(getP99()), millis(getP999()), millis(getMax()));
+    }
+
+}
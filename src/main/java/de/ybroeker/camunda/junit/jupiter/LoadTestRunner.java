@@ -0,0 +1,180 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import de.ybroeker.camunda.junit.jupiter.impl.LatencyHistogram;
+import org.camunda.bpm.engine.runtime.Job;
+import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.camunda.bpm.engine.task.Task;
+
+/**
+ * Starts many instances of a process concurrently and measures their throughput and latency.
+ * <p>
+ * Injected as test parameter and configured by {@link LoadTest}:
+ * <pre>
+ * &#64;Test
+ * &#64;LoadTest(instances = 1000, concurrency = 8)
+ * &#64;Deployment(resources = "Example_Workflow.bpmn")
+ * void load(final LoadTestRunner runner) {
+ *     final LoadTestResult result = runner.run("Example_Process");
+ *     assertThat(result.getP99()).isLessThan(Duration.ofMillis(50));
+ * }
+ * </pre>
+ * Each instance is driven on its own by one thread: after starting it, its user tasks and jobs are completed until
+ * none are left. Instances must therefore not wait for messages or signals from outside.
+ */
+public final class LoadTestRunner {
+
+    /**
+     * Limits the user tasks and jobs completed per instance, to stop loops in the process.
+     */
+    private static final int MAX_STEPS = 10_000;
+
+    private final TestProcessEngine testProcessEngine;
+
+    private final LoadTest configuration;
+
+    private final Consumer<Map<String, String>> reporter;
+
+    LoadTestRunner(final TestProcessEngine testProcessEngine,
+                   final LoadTest configuration,
+                   final Consumer<Map<String, String>> reporter) {
+        this.testProcessEngine = testProcessEngine;
+        this.configuration = configuration;
+        this.reporter = reporter;
+    }
+
+    /**
+     * Runs the configured number of instances of the latest version of {@code processDefinitionKey} and reports the
+     * result as JUnit report entry.
+     *
+     * @param processDefinitionKey the key of the process
+     * @return the measured throughput and latencies
+     */
+    public LoadTestResult run(final String processDefinitionKey) {
+        return run(processDefinitionKey, Collections.emptyMap());
+    }
+
+    /**
+     * Runs the configured number of instances of the latest version of {@code processDefinitionKey} and reports the
+     * result as JUnit report entry.
+     *
+     * @param processDefinitionKey the key of the process
+     * @param variables            the variables of each instance
+     * @return the measured throughput and latencies
+     */
+    public LoadTestResult run(final String processDefinitionKey, final Map<String, Object> variables) {
+        final ExecutorService executor = Executors.newFixedThreadPool(configuration.concurrency(), threadFactory());
+        try {
+            drive(executor, processDefinitionKey, variables, configuration.warmUpInstances(), new LatencyHistogram());
+
+            final LatencyHistogram latencies = new LatencyHistogram();
+            final long start = System.nanoTime();
+            drive(executor, processDefinitionKey, variables, configuration.instances(), latencies);
+            final Duration duration = Duration.ofNanos(System.nanoTime() - start);
+
+            final LoadTestResult result = new LoadTestResult(processDefinitionKey, latencies, duration);
+            reporter.accept(result.toReportEntry());
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void drive(final ExecutorService executor,
+                       final String processDefinitionKey,
+                       final Map<String, Object> variables,
+                       final int instances,
+                       final LatencyHistogram latencies) {
+        final List<Future<?>> futures = new ArrayList<>(instances);
+        for (int i = 0; i < instances; i++) {
+            futures.add(executor.submit(() -> {
+                testProcessEngine.authenticateTenant();
+                final long start = System.nanoTime();
+                driveInstance(processDefinitionKey, variables);
+                latencies.record(System.nanoTime() - start);
+            }));
+        }
+        for (final Future<?> future : futures) {
+            await(future);
+        }
+    }
+
+    private void driveInstance(final String processDefinitionKey, final Map<String, Object> variables) {
+        final ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey(processDefinitionKey, variables);
+
+        int steps = 0;
+        boolean progressed = true;
+        while (progressed) {
+            progressed = false;
+            if (configuration.completeUserTasks()) {
+                for (final Task task : testProcessEngine.getTaskService().createTaskQuery()
+                        .processInstanceId(processInstance.getId()).list()) {
+                    testProcessEngine.getTaskService().complete(task.getId());
+                    progressed = true;
+                    steps++;
+                }
+            }
+            if (configuration.executeJobs()) {
+                for (final Job job : testProcessEngine.getManagementService().createJobQuery()
+                        .processInstanceId(processInstance.getId()).executable().list()) {
+                    testProcessEngine.getManagementService().executeJob(job.getId());
+                    progressed = true;
+                    steps++;
+                }
+            }
+            if (steps > MAX_STEPS) {
+                throw new IllegalStateException("Process instance " + processInstance.getId() + " of "
+                                                        + processDefinitionKey + " didn't end after " + MAX_STEPS
+                                                        + " steps");
+            }
+        }
+    }
+
+    private static void await(final Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for process instances", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ThreadFactory threadFactory() {
+        final AtomicInteger threads = new AtomicInteger();
+        return runnable -> {
+            final Thread thread = new Thread(runnable, "camunda-load-test-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
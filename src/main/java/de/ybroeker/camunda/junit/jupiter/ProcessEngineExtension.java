@@ -15,21 +15,45 @@
  */
 package de.ybroeker.camunda.junit.jupiter;
 
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.*;
-
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.*;
+
+import de.ybroeker.camunda.junit.jupiter.impl.ClassDeployment;
+import de.ybroeker.camunda.junit.jupiter.impl.CreatedEntities;
+import de.ybroeker.camunda.junit.jupiter.impl.DeploymentCache;
 import de.ybroeker.camunda.junit.jupiter.impl.Deployments;
+import de.ybroeker.camunda.junit.jupiter.impl.FlowNodeCoverage;
+import de.ybroeker.camunda.junit.jupiter.impl.PhaseTimings;
+import de.ybroeker.camunda.junit.jupiter.impl.PhaseTimings.Phase;
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEngineFactory;
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEnginePool;
+import de.ybroeker.camunda.junit.jupiter.impl.SynchronousJobExecution;
+import de.ybroeker.camunda.junit.jupiter.impl.TenantIsolation;
 import de.ybroeker.camunda.junit.jupiter.impl.TestProcessEngineImpl;
 import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.ProcessEngineConfiguration;
 import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.cfg.IdGenerator;
 import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cfg.ProcessEnginePlugin;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.history.HistoryLevel;
 import org.camunda.bpm.engine.impl.test.TestHelper;
 import org.camunda.bpm.engine.impl.util.ClockUtil;
 import org.camunda.bpm.engine.repository.Deployment;
-import org.jetbrains.annotations.NotNull;
+import org.camunda.bpm.engine.test.RequiredHistoryLevel;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.extension.*;
+import org.junit.jupiter.api.parallel.Execution;
+import org.junit.jupiter.api.parallel.ExecutionMode;
+import org.junit.platform.commons.support.HierarchyTraversalMode;
 
+import static org.junit.platform.commons.support.AnnotationSupport.findAnnotatedMethods;
+import static org.junit.platform.commons.support.AnnotationSupport.findAnnotation;
 import static org.junit.platform.commons.support.AnnotationSupport.isAnnotated;
 
 
@@ -38,81 +62,403 @@ import static org.junit.platform.commons.support.AnnotationSupport.isAnnotated;
  *
  * @see org.camunda.bpm.engine.test.ProcessEngineRule
  */
-public class ProcessEngineExtension implements BeforeTestExecutionCallback,
+public class ProcessEngineExtension implements BeforeAllCallback,
+                                               AfterAllCallback,
+                                               BeforeTestExecutionCallback,
                                                AfterTestExecutionCallback,
+                                               AfterEachCallback,
                                                ParameterResolver {
 
     public static final String PROCESS_ENGINE_KEY = "PROCESS_ENGINE";
 
+    /**
+     * Configuration-parameter to disable reuse of deployments with identical resources, enabled by default.
+     */
+    public static final String DEPLOYMENT_CACHE_ENABLED_PROPERTY = "camunda.junit.deployment.cache.enabled";
+
+    /**
+     * Configuration-parameter to disable resetting engines by restoring a snapshot of their database after tests
+     * annotated with {@link EnsureCleanAfterTest}, enabled by default. The snapshot is taken before the first of those
+     * tests is deployed on an engine. If disabled, those engines are closed.
+     */
+    public static final String DATABASE_SNAPSHOT_ENABLED_PROPERTY = "camunda.junit.database.snapshot.enabled";
+
+    /**
+     * Configuration-parameter to disable initializing the databases of new engines from a template
+     * instead of creating their schema, enabled by default.
+     */
+    public static final String SCHEMA_TEMPLATE_ENABLED_PROPERTY = "camunda.junit.schema.template.enabled";
+
+    /**
+     * Configuration-parameter to disable deploying class-level {@link org.camunda.bpm.engine.test.Deployment}s once
+     * for all tests of the class, enabled by default. Classes with concurrently running tests always deploy per test.
+     */
+    public static final String CLASS_DEPLOYMENT_ENABLED_PROPERTY = "camunda.junit.class.deployment.enabled";
+
+    /**
+     * Configuration-parameter for the history level of engines used by tests without {@link RequiredHistoryLevel},
+     * e.g. {@code none} to skip writing history. Defaults to the level of the configuration resource.
+     */
+    public static final String HISTORY_LEVEL_PROPERTY = "camunda.junit.history.level";
+
+    /**
+     * Configuration-parameter for the file, to which the durations of the extension's phases are reported at the end
+     * of the test run. Nothing is measured if not set.
+     */
+    public static final String TIMING_REPORT_PROPERTY = "camunda.junit.timing.report";
+
+    /**
+     * Configuration-parameter for the file, to which the coverage of the flow nodes and sequence flows of all deployed
+     * BPMN resources is reported at the end of the test run. Nothing is collected if not set. Only engines built by the
+     * extension are covered, not external engines.
+     */
+    public static final String COVERAGE_REPORT_PROPERTY = "camunda.junit.coverage.report";
+
+    /**
+     * Configuration-parameter to run all tests on one shared engine, each in its own tenant, disabled by default.
+     * Deployments of a test are bound to its tenant and the test's thread is authenticated with it, so tests only see
+     * their own data. Neither the deployment cache nor class-level deployments are used. Tests annotated with
+     * {@link EnsureCleanAfterTest} still get an exclusive engine.
+     */
+    public static final String TENANT_ISOLATION_ENABLED_PROPERTY = "camunda.junit.tenant.isolation.enabled";
+
+    /**
+     * Configuration-parameter to count the SQL statements of all tests, disabled by default. Statements are always
+     * counted for tests with a {@link QueryBudget}. Counting requires an exclusively leased engine, i.e. neither an
+     * external engine nor {@link #TENANT_ISOLATION_ENABLED_PROPERTY tenant isolation}.
+     */
+    public static final String SQL_STATEMENT_COUNTS_ENABLED_PROPERTY = "camunda.junit.sql.statement.counts.enabled";
+
+    /**
+     * System-property to disable building the first engine in the background as soon as the extension is created,
+     * enabled by default. It is read when the extension is created, before configuration-parameters are available,
+     * so the engine is built with the {@value #SCHEMA_TEMPLATE_ENABLED_PROPERTY} and {@value #HISTORY_LEVEL_PROPERTY}
+     * system-properties and only taken by tests resolving the same options.
+     */
+    public static final String ENGINE_WARM_UP_ENABLED_PROPERTY = "camunda.junit.engine.warmup.enabled";
+
+    private static final String PARALLEL_ENABLED_PROPERTY = "junit.jupiter.execution.parallel.enabled";
+
+    private static final String PARALLEL_MODE_DEFAULT_PROPERTY = "junit.jupiter.execution.parallel.mode.default";
+
     private static final String DEFAULT_CONFIGURATION_RESOURCE = "camunda.cfg.xml";
 
+    /**
+     * Resource-key for {@link org.junit.jupiter.api.parallel.ResourceLock}, to be used by tests which change the
+     * JVM-wide clock, e.g. by {@link TestProcessEngine#setCurrentTime(Date)}.
+     */
+    public static final String CLOCK_RESOURCE = "org.camunda.bpm.engine.impl.util.ClockUtil";
+
     //Per Instance
     private String configurationResource = DEFAULT_CONFIGURATION_RESOURCE;
 
-    //private final boolean ensureCleanAfterTest;
+    private final ProcessEngine processEngine;
 
+    /**
+     * Creates the configuration of each engine if built by {@link #builder()}, else {@code null}.
+     */
+    private final Supplier<ProcessEngineConfigurationImpl> configurations;
 
-    //Per Testcase
-    //TODO: not Threadsafe
-    private List<String> additionalDeployments = new ArrayList<String>();
+    private final String configurationKey;
 
-    private final ThreadLocal<@NotNull ProcessEngine> processEngineHolder;
+    //private final boolean ensureCleanAfterTest;
 
-    private final ThreadLocal<AtomicReference<Deployment>> deploymentHolder = ThreadLocal.withInitial(AtomicReference::new);
+    /**
+     * Tests currently executed on each thread, only needed for {@link #manageDeployment(Deployment)}.
+     * Entries are owned by a {@link RunningTest} in the store of the test, so they are removed with its context.
+     */
+    private final Map<Thread, TestProcessEngine> runningTests = new ConcurrentHashMap<>();
 
     public ProcessEngineExtension() {
-        this.processEngineHolder = ThreadLocal.withInitial(this::getNewProcessEngine);
+        this.processEngine = null;
+        this.configurations = null;
+        this.configurationKey = configurationResource;
+        warmUp();
     }
 
     public ProcessEngineExtension(final String configurationResource) {
         this.configurationResource = configurationResource;
-        this.processEngineHolder = ThreadLocal.withInitial(this::getNewProcessEngine);
+        this.processEngine = null;
+        this.configurations = null;
+        this.configurationKey = configurationResource;
+        warmUp();
     }
 
     public ProcessEngineExtension(final ProcessEngine processEngine) {
-        this.processEngineHolder = ThreadLocal.withInitial(() -> processEngine);
+        this.processEngine = processEngine;
+        this.configurations = null;
+        this.configurationKey = null;
+    }
+
+    private ProcessEngineExtension(final Supplier<ProcessEngineConfigurationImpl> configurations) {
+        this.configurationResource = null;
+        this.processEngine = null;
+        this.configurations = configurations;
+        //engines are shared by all tests using this instance
+        this.configurationKey = ProcessEngineExtension.class.getName() + "@" + UUID.randomUUID();
+        warmUp();
+    }
+
+    /**
+     * Returns a builder for an extension, which creates its engines from a programmatic configuration
+     * instead of a configuration resource. Register the built extension with {@link RegisterExtension}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Starts building the first engine in the background, unless disabled by {@value #ENGINE_WARM_UP_ENABLED_PROPERTY}.
+     * JUnit resolves configuration-parameters from system-properties first, so they yield the options of most tests.
+     */
+    private void warmUp() {
+        if (!Boolean.parseBoolean(System.getProperty(ENGINE_WARM_UP_ENABLED_PROPERTY, "true"))) {
+            return;
+        }
+        final boolean schemaTemplateEnabled = Boolean.parseBoolean(
+                System.getProperty(SCHEMA_TEMPLATE_ENABLED_PROPERTY, "true"));
+        final String historyLevel = System.getProperty(HISTORY_LEVEL_PROPERTY);
+        if (configurations != null) {
+            ProcessEngineFactory.warmUp(configurationKey, configurations, schemaTemplateEnabled, historyLevel);
+        } else {
+            ProcessEngineFactory.warmUp(configurationResource, schemaTemplateEnabled, historyLevel);
+        }
+    }
+
+    @Override
+    public void beforeAll(final ExtensionContext extensionContext) {
+        ProcessEngineFactory.closeWarmUpsWithRoot(extensionContext);
+        final Class<?> testClass = extensionContext.getRequiredTestClass();
+        if (!Deployments.hasClassDeployment(testClass) || !isClassDeploymentEnabled(extensionContext)) {
+            return;
+        }
+
+        final Map<String, byte[]> resources = Deployments.findClassDeploymentResources(testClass);
+        final ClassDeployment classDeployment = new ClassDeployment(getProcessEnginePool(extensionContext),
+                                                                    isDeploymentCacheEnabled(extensionContext),
+                                                                    extensionContext.getUniqueId(),
+                                                                    resources);
+        getTestStore(extensionContext).put(classDeploymentKey(testClass), classDeployment);
+        final PhaseTimings timings = getPhaseTimings(extensionContext);
+        timings.time(extensionContext, Phase.LEASE_ENGINE, classDeployment::getLease);
+        timings.time(extensionContext, Phase.DEPLOY, classDeployment::getDeployment);
+    }
+
+    @Override
+    public void afterAll(final ExtensionContext extensionContext) {
+        final ClassDeployment classDeployment = getTestStore(extensionContext)
+                .remove(classDeploymentKey(extensionContext.getRequiredTestClass()), ClassDeployment.class);
+        if (classDeployment != null) {
+            classDeployment.close();
+        }
     }
 
+    /**
+     * Class-level deployments are deployed per test if disabled by {@value #CLASS_DEPLOYMENT_ENABLED_PROPERTY},
+     * if all tests of the class must clean up, if tests require their own history level, or if tests of the class
+     * may run concurrently or are isolated by tenants.
+     */
+    private boolean isClassDeploymentEnabled(final ExtensionContext extensionContext) {
+        return !isAnnotated(extensionContext.getTestClass(), EnsureCleanAfterTest.class)
+                && !isTenantIsolationEnabled(extensionContext)
+                && findAnnotatedMethods(extensionContext.getRequiredTestClass(), RequiredHistoryLevel.class,
+                                        HierarchyTraversalMode.TOP_DOWN).isEmpty()
+                && !isConcurrent(extensionContext)
+                && extensionContext.getConfigurationParameter(CLASS_DEPLOYMENT_ENABLED_PROPERTY)
+                        .map(Boolean::parseBoolean)
+                        .orElse(true);
+    }
+
+    private static boolean isConcurrent(final ExtensionContext extensionContext) {
+        final boolean parallelEnabled = extensionContext.getConfigurationParameter(PARALLEL_ENABLED_PROPERTY)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+        if (!parallelEnabled) {
+            return false;
+        }
+        final Class<?> testClass = extensionContext.getRequiredTestClass();
+        final ExecutionMode classMode = findAnnotation(testClass, Execution.class)
+                .map(Execution::value)
+                .orElseGet(() -> extensionContext.getConfigurationParameter(PARALLEL_MODE_DEFAULT_PROPERTY)
+                        .map(mode -> ExecutionMode.valueOf(mode.trim().toUpperCase(Locale.ROOT)))
+                        .orElse(ExecutionMode.SAME_THREAD));
+        return classMode == ExecutionMode.CONCURRENT
+                || findAnnotatedMethods(testClass, Execution.class, HierarchyTraversalMode.TOP_DOWN).stream()
+                        .anyMatch(method -> method.getAnnotation(Execution.class).value() == ExecutionMode.CONCURRENT);
+    }
 
     @Override
     public void afterTestExecution(final ExtensionContext extensionContext) {
-        if (!Deployments.hasDeployments(extensionContext)) {
+        //tests may switch to inline execution without being deployed, the thread is reused by other tests
+        SynchronousJobExecution.setInline(false);
+        //deployments managed after this point would not be deleted anymore
+        final RunningTest runningTest = getTestStore(extensionContext).remove(RunningTest.class, RunningTest.class);
+        if (runningTest != null) {
+            runningTest.close();
+        }
+        if (!Deployments.hasDeployments(extensionContext) || !isDeployed(extensionContext)) {
             return;
         }
 
-        final ProcessEngine processEngine = processEngineHolder.get();
+        final PhaseTimings timings = getPhaseTimings(extensionContext);
+        final ProcessEnginePool.Lease lease = getLease(extensionContext);
+        final ProcessEngine processEngine = lease.getProcessEngine();
+        final TestProcessEngineImpl testProcessEngine = getTestProcessEngine(extensionContext);
+        if (isSqlStatementCountingEnabled(extensionContext) && lease.isExclusive()) {
+            lease.getSqlStatementCounter().stopRecording();
+        }
 
         processEngine.getIdentityService().clearAuthentication();
         processEngine.getProcessEngineConfiguration().setTenantCheckEnabled(true);
-        processEngine.getManagementService().unregisterProcessApplication(deploymentHolder.get().get().getId(), true);
+        //only registrations of the test, unregistering evicts the process definitions from the cache
+        if (!testProcessEngine.getRegisteredDeploymentIds().isEmpty()) {
+            timings.run(extensionContext, Phase.UNREGISTER_PROCESS_APPLICATION,
+                        () -> testProcessEngine.getRegisteredDeploymentIds().forEach(
+                                deploymentId -> processEngine.getManagementService()
+                                        .unregisterProcessApplication(deploymentId, true)));
+        }
 
-        this.deleteDeployments();
+        final DeploymentCache deploymentCache = lease.getDeploymentCache();
+        final ClassDeployment classDeployment = getClassDeployment(extensionContext);
+        timings.run(extensionContext, Phase.DELETE_DEPLOYMENT,
+                    () -> this.deleteDeployments(testProcessEngine, lease, classDeployment));
 
-        boolean ensureCleanAfterTest = isAnnotated(extensionContext.getElement(), EnsureCleanAfterTest.class);
+        boolean ensureCleanAfterTest = isEnsureCleanAfterTest(extensionContext);
         if (ensureCleanAfterTest) {
-            TestHelper.assertAndEnsureCleanDbAndCache(processEngine);
+            timings.run(extensionContext, Phase.ASSERT_CLEAN_DB, () -> {
+                if (classDeployment != null) {
+                    classDeployment.delete();
+                }
+                deploymentCache.clear();
+                TestHelper.assertAndEnsureCleanDbAndCache(processEngine);
+            });
         }
 
-        TestHelper.resetIdGenerator(getProcessEngineConfiguration(processEngine));
-        ClockUtil.reset();
+        //ids of a shared engine are still handed out to concurrently running tests
+        if (lease.isExclusive()) {
+            timings.run(extensionContext, Phase.RESET_ID_GENERATOR, () -> {
+                TestHelper.resetIdGenerator(getProcessEngineConfiguration(processEngine));
+                releaseIdGenerator(processEngine, extensionContext.getUniqueId());
+            });
+        }
+        if (testProcessEngine.isCurrentTimeSet()) {
+            ClockUtil.reset();
+        }
 
         if (ensureCleanAfterTest) {
-            closeProcessEngine();
+            timings.run(extensionContext, Phase.RESET_ENGINE, () -> resetProcessEngine(extensionContext, lease));
         }
         getStore(extensionContext).remove(PROCESS_ENGINE_KEY);
+
+        findQueryBudget(extensionContext).ifPresent(testProcessEngine.getSqlStatementCounts()::assertWithin);
+    }
+
+    private static Optional<QueryBudget> findQueryBudget(final ExtensionContext extensionContext) {
+        final Optional<QueryBudget> methodBudget = findAnnotation(extensionContext.getElement(), QueryBudget.class);
+        if (methodBudget.isPresent()) {
+            return methodBudget;
+        }
+        return findAnnotation(extensionContext.getTestClass(), QueryBudget.class);
+    }
+
+    /**
+     * Returns if the test was deployed, tests aborted before their deployment have nothing to clean up.
+     */
+    private boolean isDeployed(final ExtensionContext extensionContext) {
+        final TestProcessEngineImpl testProcessEngine = getTestStore(extensionContext)
+                .get(contextKey(TestProcessEngineImpl.class, extensionContext), TestProcessEngineImpl.class);
+        return testProcessEngine != null && testProcessEngine.getDeployment() != null;
     }
 
     /**
-     * Removes Deployments and resets {@code deploymentIdHolder}.
+     * Removes the Deployment and all managed Deployments of the test.
+     * Cached Deployments and the Deployment of the test class are kept, only their runtime-data is removed,
+     * unless the test modified their definitions.
      */
     @SuppressWarnings("PMD.DataflowAnomalyAnalysis")
-    private void deleteDeployments() {
-        final ProcessEngine processEngine = processEngineHolder.get();
-        TestHelper.deleteDeployment(processEngine, deploymentHolder.get().get().getId());
-        for (final String additionalDeployment : additionalDeployments) {
+    private void deleteDeployments(final TestProcessEngineImpl testProcessEngine,
+                                   final ProcessEnginePool.Lease lease,
+                                   final ClassDeployment classDeployment) {
+        final ProcessEngine processEngine = testProcessEngine.getProcessEngine();
+        final DeploymentCache deploymentCache = lease.getDeploymentCache();
+        final Deployment deployment = testProcessEngine.getDeployment();
+
+        //an exclusively leased engine holds only the entities created by this test, delete exactly those
+        final boolean scoped = lease.isExclusive();
+        final boolean runtimeDataRemoved = scoped && lease.getCreatedEntityTracker().drain().delete(processEngine);
+        if (testProcessEngine.getTenantId() != null) {
+            TenantIsolation.deleteData(processEngine, testProcessEngine.getTenantId());
+        }
+
+        //managed deployments may replace definitions of the kept deployments, e.g. their timer start events
+        for (final String additionalDeployment : testProcessEngine.getManagedDeploymentIds()) {
             TestHelper.deleteDeployment(processEngine, additionalDeployment);
         }
-        deploymentHolder.remove();
+        final boolean isClassDeployment = classDeployment != null && classDeployment.isDeployment(deployment);
+        if (!isClassDeployment) {
+            if (!deploymentCache.isCached(deployment)) {
+                TestHelper.deleteDeployment(processEngine, deployment.getId());
+            } else {
+                if (!scoped) {
+                    deploymentCache.cleanRuntimeData(deployment);
+                }
+                deploymentCache.evictIfModified(deployment);
+            }
+        }
+        if (classDeployment != null) {
+            if (!scoped) {
+                classDeployment.cleanRuntimeData();
+            } else if (!runtimeDataRemoved) {
+                //case instances can only be removed with their deployment
+                classDeployment.delete();
+            }
+            classDeployment.deleteIfModified();
+        }
+    }
+
+    /**
+     * Deletes the entities created by {@link org.junit.jupiter.api.AfterEach} methods, which run after the cleanup of
+     * the test, so they are not left to the next test using the engine.
+     */
+    @Override
+    public void afterEach(final ExtensionContext extensionContext) {
+        if (!Deployments.hasDeployments(extensionContext) || !isDeployed(extensionContext)) {
+            return;
+        }
+        final ProcessEnginePool.Lease lease = getLease(extensionContext);
+        if (!lease.isExclusive() || lease.isReturned()) {
+            return;
+        }
+        final CreatedEntities createdEntities = lease.getCreatedEntityTracker().drain();
+        if (!createdEntities.delete(lease.getProcessEngine())) {
+            final ClassDeployment classDeployment = getClassDeployment(extensionContext);
+            if (classDeployment != null) {
+                //case instances can only be removed with their deployment
+                classDeployment.delete();
+            }
+        }
+    }
+
+    /**
+     * Restores the database-snapshot of the engine if enabled, closes the engine otherwise.
+     */
+    private void resetProcessEngine(final ExtensionContext extensionContext, final ProcessEnginePool.Lease lease) {
+        if (isDatabaseSnapshotEnabled(extensionContext)) {
+            lease.reset();
+        } else {
+            lease.discard();
+        }
+    }
+
+    private static boolean isDatabaseSnapshotEnabled(final ExtensionContext extensionContext) {
+        return extensionContext.getConfigurationParameter(DATABASE_SNAPSHOT_ENABLED_PROPERTY)
+                .map(Boolean::parseBoolean)
+                .orElse(true);
+    }
+
+    private static boolean isEnsureCleanAfterTest(final ExtensionContext extensionContext) {
+        return isAnnotated(extensionContext.getElement(), EnsureCleanAfterTest.class)
+                || isAnnotated(extensionContext.getTestClass(), EnsureCleanAfterTest.class);
     }
 
     private ProcessEngineConfigurationImpl getProcessEngineConfiguration(final ProcessEngine processEngine) {
@@ -121,67 +467,432 @@ public class ProcessEngineExtension implements BeforeTestExecutionCallback,
 
     @Override
     public void beforeTestExecution(final ExtensionContext extensionContext) {
+        ProcessEngineFactory.closeWarmUpsWithRoot(extensionContext);
         if (!Deployments.hasDeployments(extensionContext)) {
             return;
         }
 
-        final ProcessEngine processEngine = processEngineHolder.get();
-        Objects.requireNonNull(processEngine);
-        //TODO: check required HistoryLevel
+        if (this.processEngine != null) {
+            findHistoryLevel(extensionContext).ifPresent(level -> assumeHistoryLevel(this.processEngine, level));
+        }
 
-        Deployment deployment = Deployments.loadDeployments(extensionContext, processEngine);
+        final PhaseTimings timings = getPhaseTimings(extensionContext);
+        final ProcessEnginePool.Lease lease = timings.time(extensionContext, Phase.LEASE_ENGINE,
+                                                           () -> getLease(extensionContext));
+        final ProcessEngine processEngine = lease.getProcessEngine();
+        if (lease.isExclusive()) {
+            resetIdGenerator(processEngine, extensionContext.getUniqueId());
+        } else if (isSqlStatementCountingEnabled(extensionContext)) {
+            //statements of other tests on the same engine would be counted as well
+            throw new ExtensionConfigurationException("SQL statements can only be counted on exclusively leased "
+                                                              + "engines, not on external engines or with tenant "
+                                                              + "isolation");
+        }
+        final String tenantId = isTenantIsolated(extensionContext) ? TenantIsolation.newTenantId() : null;
+
+        final Class<?> testClass = extensionContext.getRequiredTestClass();
+        final FlowNodeCoverage coverage = getCoverage(extensionContext);
+        final TestProcessEngineImpl testProcessEngine = getTestProcessEngine(extensionContext);
+        final ClassDeployment classDeployment = getClassDeployment(extensionContext);
+        if (isEnsureCleanAfterTest(extensionContext) && isDatabaseSnapshotEnabled(extensionContext)
+                && lease.isDatabaseSnapshotMissing()) {
+            timings.run(extensionContext, Phase.RESET_ENGINE, () -> {
+                //the engine is reset to the snapshot, so it must not hold the deployment of the class
+                if (classDeployment != null) {
+                    classDeployment.delete();
+                }
+                lease.takeDatabaseSnapshot();
+            });
+        }
+        Deployment deployment;
+        if (classDeployment != null) {
+            deployment = timings.time(extensionContext, Phase.DEPLOY, classDeployment::getDeployment);
+            coverage.addDeployment(processEngine, testClass, deployment, classDeployment.getResources());
+            if (Deployments.hasMethodDeployment(extensionContext)) {
+                final Map<String, byte[]> resources = timings.time(extensionContext, Phase.RESOLVE_RESOURCES,
+                        () -> Deployments.findMethodDeploymentResources(extensionContext));
+                deployment = timings.time(extensionContext, Phase.DEPLOY,
+                        () -> Deployments.deploy(processEngine, extensionContext.getUniqueId(), resources));
+                coverage.addDeployment(processEngine, testClass, deployment, resources);
+            }
+        } else {
+            final Map<String, byte[]> resources = timings.time(extensionContext, Phase.RESOLVE_RESOURCES,
+                    () -> Deployments.findResources(extensionContext));
+            if (tenantId != null) {
+                deployment = timings.time(extensionContext, Phase.DEPLOY,
+                        () -> Deployments.deploy(processEngine, extensionContext.getUniqueId(), resources, tenantId));
+            } else if (isDeploymentCacheEnabled(extensionContext)) {
+                deployment = timings.time(extensionContext, Phase.DEPLOY,
+                        () -> lease.getDeploymentCache().deploy(extensionContext.getUniqueId(), resources));
+            } else {
+                deployment = timings.time(extensionContext, Phase.DEPLOY,
+                        () -> Deployments.deploy(processEngine, extensionContext.getUniqueId(), resources));
+            }
+            coverage.addDeployment(processEngine, testClass, deployment, resources);
+        }
 
-        this.deploymentHolder.get().set(deployment);
+        testProcessEngine.setDeployment(deployment);
+        if (tenantId != null) {
+            testProcessEngine.setTenantId(tenantId);
+            testProcessEngine.authenticateTenant();
+        }
+        if (isSqlStatementCountingEnabled(extensionContext)) {
+            testProcessEngine.setSqlStatementCounts(lease.getSqlStatementCounter().startRecording());
+        }
+        getTestStore(extensionContext).put(RunningTest.class, new RunningTest(Thread.currentThread(), testProcessEngine));
         getStore(extensionContext).put(PROCESS_ENGINE_KEY, processEngine);
     }
 
+    private void resetIdGenerator(final ProcessEngine processEngine, final String scope) {
+        final IdGenerator idGenerator = getProcessEngineConfiguration(processEngine).getIdGenerator();
+        if (idGenerator instanceof InMemoryIdGenerator) {
+            ((InMemoryIdGenerator) idGenerator).reset(scope);
+        }
+    }
+
+    private void releaseIdGenerator(final ProcessEngine processEngine, final String scope) {
+        final IdGenerator idGenerator = getProcessEngineConfiguration(processEngine).getIdGenerator();
+        if (idGenerator instanceof InMemoryIdGenerator) {
+            ((InMemoryIdGenerator) idGenerator).release(scope);
+        }
+    }
+
+    /**
+     * Returns the history level required by {@link RequiredHistoryLevel} on the test or its class, or configured
+     * by {@value #HISTORY_LEVEL_PROPERTY}.
+     */
+    private static Optional<String> findHistoryLevel(final ExtensionContext extensionContext) {
+        final Optional<RequiredHistoryLevel> required = Stream.of(extensionContext.getElement(),
+                                                                 extensionContext.getTestClass())
+                .map(element -> findAnnotation(element, RequiredHistoryLevel.class))
+                .filter(Optional::isPresent).map(Optional::get)
+                .findFirst();
+        if (required.isPresent()) {
+            return Optional.of(required.get().value());
+        }
+        return extensionContext.getConfigurationParameter(HISTORY_LEVEL_PROPERTY);
+    }
+
+    /**
+     * Aborts the test if the history level of the external {@code processEngine} is lower than required.
+     */
+    private static void assumeHistoryLevel(final ProcessEngine processEngine, final String requiredLevel) {
+        final ProcessEngineConfigurationImpl configuration =
+                ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration();
+        final HistoryLevel required = configuration.getHistoryLevels().stream()
+                .filter(level -> level.getName().equalsIgnoreCase(requiredLevel))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown history level " + requiredLevel));
+        final HistoryLevel actual = configuration.getHistoryLevel();
+        Assumptions.assumeTrue(actual.getId() >= required.getId(),
+                               () -> "Requires history level " + required.getName() + ", process engine has "
+                                       + actual.getName());
+    }
+
+    /**
+     * Deployments are not reused for tests annotated with {@link EnsureCleanAfterTest} or if disabled by
+     * {@value #DEPLOYMENT_CACHE_ENABLED_PROPERTY}.
+     */
+    private boolean isDeploymentCacheEnabled(final ExtensionContext extensionContext) {
+        return !isEnsureCleanAfterTest(extensionContext)
+                && extensionContext.getConfigurationParameter(DEPLOYMENT_CACHE_ENABLED_PROPERTY)
+                        .map(Boolean::parseBoolean)
+                        .orElse(true);
+    }
+
+    /**
+     * Statements are counted for tests with a {@link QueryBudget}, or for all tests if enabled by
+     * {@value #SQL_STATEMENT_COUNTS_ENABLED_PROPERTY}.
+     */
+    private static boolean isSqlStatementCountingEnabled(final ExtensionContext extensionContext) {
+        return findQueryBudget(extensionContext).isPresent()
+                || extensionContext.getConfigurationParameter(SQL_STATEMENT_COUNTS_ENABLED_PROPERTY)
+                        .map(Boolean::parseBoolean)
+                        .orElse(false);
+    }
+
+    private static boolean isTenantIsolationEnabled(final ExtensionContext extensionContext) {
+        return extensionContext.getConfigurationParameter(TENANT_ISOLATION_ENABLED_PROPERTY)
+                .map(Boolean::parseBoolean)
+                .orElse(false);
+    }
+
+    /**
+     * Tests are isolated by tenants if enabled by {@value #TENANT_ISOLATION_ENABLED_PROPERTY}, except tests annotated
+     * with {@link EnsureCleanAfterTest}, which need an empty database.
+     */
+    private static boolean isTenantIsolated(final ExtensionContext extensionContext) {
+        return isTenantIsolationEnabled(extensionContext) && !isEnsureCleanAfterTest(extensionContext);
+    }
+
+    /**
+     * Returns the timings of the test run if a report file is configured by {@value #TIMING_REPORT_PROPERTY}.
+     */
+    private static PhaseTimings getPhaseTimings(final ExtensionContext extensionContext) {
+        return extensionContext.getConfigurationParameter(TIMING_REPORT_PROPERTY)
+                .map(file -> PhaseTimings.forReport(extensionContext, Paths.get(file)))
+                .orElse(PhaseTimings.DISABLED);
+    }
+
+    private static FlowNodeCoverage getCoverage(final ExtensionContext extensionContext) {
+        return extensionContext.getConfigurationParameter(COVERAGE_REPORT_PROPERTY)
+                .map(file -> FlowNodeCoverage.forReport(extensionContext, Paths.get(file)))
+                .orElse(FlowNodeCoverage.DISABLED);
+    }
+
     private ExtensionContext.Store getStore(ExtensionContext context) {
         return context.getStore(ExtensionContext.Namespace.create(context.getRequiredTestClass(),
                                                                   context.getRequiredTestMethod()));
     }
 
 
-    private ProcessEngine getNewProcessEngine() {
-        return getNewProcessEngine(this.configurationResource);
+    /**
+     * Returns the engine leased to the current test, leases one if necessary.
+     * Tests of a class with {@link ClassDeployment} use the engine of their class, otherwise each context has its own
+     * lease, which is returned to the pool when the context is closed.
+     */
+    private ProcessEnginePool.Lease getLease(final ExtensionContext extensionContext) {
+        final ClassDeployment classDeployment = getClassDeployment(extensionContext);
+        final ProcessEnginePool.Lease lease;
+        if (classDeployment != null) {
+            lease = classDeployment.getLease();
+        } else {
+            lease = getTestStore(extensionContext)
+                    .getOrComputeIfAbsent(contextKey(ProcessEnginePool.Lease.class, extensionContext),
+                                          key -> getProcessEnginePool(extensionContext).lease(),
+                                          ProcessEnginePool.Lease.class);
+        }
+        if (lease.isExclusive() && !lease.isReturned()) {
+            //track entities from the start, e.g. those created in BeforeEach methods
+            lease.getCreatedEntityTracker();
+        }
+        return lease;
     }
 
-    private ProcessEngine getNewProcessEngine(final String configurationResource) {
-        final ProcessEngine processEngine = ProcessEngineConfiguration
-                .createProcessEngineConfigurationFromResource(configurationResource)
-                .setJdbcUrl("jdbc:h2:mem:"+UUID.randomUUID())//anonymous DB for each engine
-                .buildProcessEngine();
+    /**
+     * Returns the state of the current test, which is held in the store of the test. Each context has its own,
+     * tests don't inherit the one resolved for their class, e.g. in {@link org.junit.jupiter.api.BeforeAll}-methods.
+     */
+    private TestProcessEngineImpl getTestProcessEngine(final ExtensionContext extensionContext) {
+        final ProcessEngine leasedProcessEngine = getLease(extensionContext).getProcessEngine();
+        return getTestStore(extensionContext)
+                .getOrComputeIfAbsent(contextKey(TestProcessEngineImpl.class, extensionContext),
+                                      key -> new TestProcessEngineImpl(leasedProcessEngine),
+                                      TestProcessEngineImpl.class);
+    }
 
-        return processEngine;
+    /**
+     * Lookups in stores fall back to parent contexts, keys including the unique id only match in their own context.
+     */
+    private static List<Object> contextKey(final Class<?> type, final ExtensionContext extensionContext) {
+        return Arrays.asList(type, extensionContext.getUniqueId());
     }
 
-    private void closeProcessEngine() {
-        final ProcessEngine processEngine = processEngineHolder.get();
-        processEngine.close();
-        processEngineHolder.remove();
+    /**
+     * Returns the deployment of the test class, if deployed once for all tests of the class.
+     * {@link org.junit.jupiter.api.Nested Nested} classes don't share the deployment of their enclosing class.
+     */
+    private ClassDeployment getClassDeployment(final ExtensionContext extensionContext) {
+        return getTestStore(extensionContext).get(classDeploymentKey(extensionContext.getRequiredTestClass()),
+                                                  ClassDeployment.class);
     }
 
+    /**
+     * Stores lookup keys in parent contexts, so the deployment is keyed by its class.
+     */
+    private static List<Object> classDeploymentKey(final Class<?> testClass) {
+        return Arrays.asList(ClassDeployment.class, testClass);
+    }
 
+    private ExtensionContext.Store getTestStore(final ExtensionContext extensionContext) {
+        return extensionContext.getStore(ExtensionContext.Namespace.create(ProcessEngineExtension.class, this));
+    }
+
+    private ProcessEnginePool getProcessEnginePool(final ExtensionContext extensionContext) {
+        if (processEngine != null) {
+            return ProcessEnginePool.forProcessEngine(extensionContext, processEngine);
+        }
+        final boolean schemaTemplateEnabled = extensionContext.getConfigurationParameter(SCHEMA_TEMPLATE_ENABLED_PROPERTY)
+                .map(Boolean::parseBoolean)
+                .orElse(true);
+        final ProcessEnginePool.Options options = configurations != null
+                ? ProcessEnginePool.Options.configurations(configurationKey, configurations)
+                : ProcessEnginePool.Options.configurationResource(configurationResource);
+        return ProcessEnginePool.forConfiguration(extensionContext, options
+                .schemaTemplateEnabled(schemaTemplateEnabled)
+                .historyLevel(findHistoryLevel(extensionContext).orElse(null))
+                .shared(isTenantIsolated(extensionContext)));
+    }
+
+    /**
+     * @return the configuration resource, {@code null} if configured by a {@link #builder()} or an external engine
+     */
     public String getConfigurationResource() {
         return configurationResource;
     }
 
+    /**
+     * Adds a Deployment, which is deleted after the test currently executed on the calling thread.
+     *
+     * @param deployment the deployment to delete after the test
+     * @deprecated depends on the executing thread, use {@link TestProcessEngine#manageDeployment(Deployment)}
+     */
+    @Deprecated
     public void manageDeployment(final Deployment deployment) {
-        this.additionalDeployments.add(deployment.getId());
+        final TestProcessEngine testProcessEngine = runningTests.get(Thread.currentThread());
+        if (testProcessEngine == null) {
+            throw new IllegalStateException("No test with deployment running on " + Thread.currentThread());
+        }
+        testProcessEngine.manageDeployment(deployment);
     }
 
 
     @Override
     public boolean supportsParameter(final ParameterContext parameterContext, final ExtensionContext extensionContext) {
-        return parameterContext.getParameter().getType().equals(TestProcessEngine.class);
+        final Class<?> type = parameterContext.getParameter().getType();
+        return type.equals(TestProcessEngine.class) || type.equals(LoadTestRunner.class);
     }
 
     @Override
     public Object resolveParameter(final ParameterContext parameterContext, final ExtensionContext extensionContext) {
-        return getProcessEngineExtension();
+        if (parameterContext.getParameter().getType().equals(LoadTestRunner.class)) {
+            final LoadTest loadTest = findAnnotation(extensionContext.getElement(), LoadTest.class)
+                    .orElseThrow(() -> new ParameterResolutionException(
+                            "LoadTestRunner can only be injected into tests annotated with @LoadTest"));
+            return new LoadTestRunner(getProcessEngineExtension(extensionContext), loadTest,
+                                      extensionContext::publishReportEntry);
+        }
+        return getProcessEngineExtension(extensionContext);
+    }
+
+    private TestProcessEngine getProcessEngineExtension(final ExtensionContext extensionContext) {
+        return getTestProcessEngine(extensionContext);
     }
 
-    private TestProcessEngine getProcessEngineExtension() {
-        return new TestProcessEngineImpl(processEngineHolder.get(), deploymentHolder.get());
+    /**
+     * Makes the engine of a test available to {@link #manageDeployment(Deployment)} on its thread, until the
+     * extension-context of the test is closed.
+     */
+    private final class RunningTest implements ExtensionContext.Store.CloseableResource {
+
+        private final Thread thread;
+
+        private final TestProcessEngine testProcessEngine;
+
+        private RunningTest(final Thread thread, final TestProcessEngine testProcessEngine) {
+            this.thread = thread;
+            this.testProcessEngine = testProcessEngine;
+            runningTests.put(thread, testProcessEngine);
+        }
+
+        @Override
+        public void close() {
+            runningTests.remove(thread, testProcessEngine);
+        }
+    }
+
+    /**
+     * Builds a {@link ProcessEngineExtension} with a programmatic configuration, e.g.
+     * <pre>{@code
+     * @RegisterExtension
+     * static ProcessEngineExtension extension = ProcessEngineExtension.builder()
+     *         .plugin(new SpinProcessEnginePlugin())
+     *         .configure(configuration -> configuration.setDefaultSerializationFormat("application/json"))
+     *         .build();
+     * }</pre>
+     * Each engine starts from a new {@link StandaloneInMemProcessEngineConfiguration}, unless replaced by
+     * {@link #configuration(Supplier)}, and gets its own anonymous in-memory database.
+     * <p>
+     * The {@link #fastTestPreset(boolean) fast test preset} is applied by default, before all customizations.
+     * <p>
+     * All tests using the same built extension share its engines, so declare it once, e.g. in a common base class,
+     * to reuse the engines across test classes.
+     */
+    public static final class Builder {
+
+        private Supplier<? extends ProcessEngineConfigurationImpl> configuration =
+                StandaloneInMemProcessEngineConfiguration::new;
+
+        private final List<Consumer<? super ProcessEngineConfigurationImpl>> customizers = new ArrayList<>();
+
+        private boolean fastTestPreset = true;
+
+        private Builder() {
+        }
+
+        /**
+         * @param configuration creates the initial configuration of each engine,
+         *                      {@link StandaloneInMemProcessEngineConfiguration} by default
+         */
+        public Builder configuration(final Supplier<? extends ProcessEngineConfigurationImpl> configuration) {
+            this.configuration = Objects.requireNonNull(configuration, "configuration");
+            return this;
+        }
+
+        /**
+         * Adds a customization, applied to the configuration of each engine in the order of registration.
+         */
+        public Builder configure(final Consumer<? super ProcessEngineConfigurationImpl> customizer) {
+            customizers.add(Objects.requireNonNull(customizer, "customizer"));
+            return this;
+        }
+
+        /**
+         * Adds a plugin to the configuration of each engine.
+         */
+        public Builder plugin(final ProcessEnginePlugin plugin) {
+            Objects.requireNonNull(plugin, "plugin");
+            return configure(configuration -> configuration.getProcessEnginePlugins().add(plugin));
+        }
+
+        /**
+         * Sets the history level of the engines, e.g. {@link ProcessEngineConfiguration#HISTORY_FULL}.
+         * Tests annotated with {@link RequiredHistoryLevel} still use engines with the required level.
+         */
+        public Builder history(final String history) {
+            Objects.requireNonNull(history, "history");
+            return configure(configuration -> configuration.setHistory(history));
+        }
+
+        /**
+         * Enables or disables the preset of settings for fast tests, enabled by default:
+         * <ul>
+         * <li>no job executor, jobs are executed by the tests</li>
+         * <li>no metrics and no metrics reporter</li>
+         * <li>JDBC batch processing</li>
+         * <li>deployment aware job acquisition</li>
+         * <li>history level {@value ProcessEngineConfiguration#HISTORY_NONE}</li>
+         * <li>ids generated by an {@link InMemoryIdGenerator}</li>
+         * </ul>
+         */
+        public Builder fastTestPreset(final boolean enabled) {
+            this.fastTestPreset = enabled;
+            return this;
+        }
+
+        public ProcessEngineExtension build() {
+            final Supplier<? extends ProcessEngineConfigurationImpl> configuration = this.configuration;
+            final boolean fastTestPreset = this.fastTestPreset;
+            final List<Consumer<? super ProcessEngineConfigurationImpl>> customizers = new ArrayList<>(this.customizers);
+            return new ProcessEngineExtension(() -> {
+                final ProcessEngineConfigurationImpl processEngineConfiguration = configuration.get();
+                if (fastTestPreset) {
+                    applyFastTestPreset(processEngineConfiguration);
+                }
+                customizers.forEach(customizer -> customizer.accept(processEngineConfiguration));
+                return processEngineConfiguration;
+            });
+        }
+
+        private static void applyFastTestPreset(final ProcessEngineConfigurationImpl configuration) {
+            configuration.setJobExecutorActivate(false);
+            configuration.setMetricsEnabled(false);
+            configuration.setDbMetricsReporterActivate(false);
+            configuration.setJdbcBatchProcessing(true);
+            configuration.setJobExecutorDeploymentAware(true);
+            configuration.setHistory(ProcessEngineConfiguration.HISTORY_NONE);
+            configuration.setIdGenerator(new InMemoryIdGenerator());
+        }
     }
 
 }
@@ -0,0 +1,307 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+import java.util.stream.*;
+
+import de.ybroeker.camunda.junit.jupiter.impl.SynchronousJobExecution.ReadOnlyCommand;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.interceptor.CommandContext;
+import org.camunda.bpm.engine.impl.persistence.entity.ExecutionEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.IncidentEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.JobEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.TaskEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.VariableInstanceEntity;
+
+/**
+ * Immutable runtime state of a process instance: active activities, tasks, jobs, incidents and variables.
+ * <p>
+ * Gathered in one command context by one query per kind of entity, instead of one command per query.
+ * Only the executions are queried for ended process instances.
+ *
+ * @see TestProcessEngine#snapshot(String)
+ */
+public final class ProcessInstanceSnapshot {
+
+    private final String processInstanceId;
+
+    private final boolean ended;
+
+    private final List<String> activeActivityIds;
+
+    private final List<Task> tasks;
+
+    private final List<Job> jobs;
+
+    private final List<Incident> incidents;
+
+    private final Map<String, Object> variables;
+
+    private ProcessInstanceSnapshot(final String processInstanceId,
+                                    final boolean ended,
+                                    final List<String> activeActivityIds,
+                                    final List<Task> tasks,
+                                    final List<Job> jobs,
+                                    final List<Incident> incidents,
+                                    final Map<String, Object> variables) {
+        this.processInstanceId = processInstanceId;
+        this.ended = ended;
+        this.activeActivityIds = Collections.unmodifiableList(activeActivityIds);
+        this.tasks = Collections.unmodifiableList(tasks);
+        this.jobs = Collections.unmodifiableList(jobs);
+        this.incidents = Collections.unmodifiableList(incidents);
+        this.variables = Collections.unmodifiableMap(variables);
+    }
+
+    static ProcessInstanceSnapshot take(final ProcessEngineConfigurationImpl configuration,
+                                        final String processInstanceId) {
+        final ReadOnlyCommand<ProcessInstanceSnapshot> command =
+                commandContext -> take(commandContext, processInstanceId);
+        return configuration.getCommandExecutorTxRequired().execute(command);
+    }
+
+    private static ProcessInstanceSnapshot take(final CommandContext commandContext, final String processInstanceId) {
+        final List<ExecutionEntity> executions = commandContext.getExecutionManager()
+                .findExecutionsByProcessInstanceId(processInstanceId);
+        if (executions.isEmpty()) {
+            return new ProcessInstanceSnapshot(processInstanceId, true, new ArrayList<>(), new ArrayList<>(),
+                                               new ArrayList<>(), new ArrayList<>(), new TreeMap<>());
+        }
+
+        final List<String> activeActivityIds = executions.stream()
+                .filter(execution -> execution.isActive() && execution.getActivityId() != null)
+                .map(ExecutionEntity::getActivityId)
+                .sorted()
+                .collect(Collectors.toList());
+
+        final List<Task> tasks = commandContext.getTaskManager()
+                .findTasksByProcessInstanceId(processInstanceId).stream()
+                .map(Task::new)
+                .sorted(Comparator.comparing(Task::getId))
+                .collect(Collectors.toList());
+        final List<Job> jobs = commandContext.getJobManager()
+                .findJobsByProcessInstanceId(processInstanceId).stream()
+                .map(Job::new)
+                .sorted(Comparator.comparing(Job::getId))
+                .collect(Collectors.toList());
+        final List<Incident> incidents = commandContext.getIncidentManager()
+                .findIncidentsByProcessInstance(processInstanceId).stream()
+                .map(Incident::new)
+                .sorted(Comparator.comparing(Incident::getId))
+                .collect(Collectors.toList());
+        //TreeMap permits null values
+        final Map<String, Object> variables = new TreeMap<>();
+        for (final VariableInstanceEntity variable : commandContext.getVariableInstanceManager()
+                .findVariableInstancesByProcessInstanceId(processInstanceId)) {
+            if (processInstanceId.equals(variable.getExecutionId()) && variable.getTaskId() == null) {
+                variables.put(variable.getName(), variable.getValue());
+            }
+        }
+        return new ProcessInstanceSnapshot(processInstanceId, false, activeActivityIds, tasks, jobs, incidents,
+                                           variables);
+    }
+
+    public String getProcessInstanceId() {
+        return processInstanceId;
+    }
+
+    /**
+     * Returns if the process instance was not found, e.g. because it ended. All other state is empty then.
+     */
+    public boolean isEnded() {
+        return ended;
+    }
+
+    /**
+     * Returns the ids of the activities with an active execution, sorted, an activity executed concurrently
+     * is contained repeatedly.
+     */
+    public List<String> getActiveActivityIds() {
+        return activeActivityIds;
+    }
+
+    public boolean isActive(final String activityId) {
+        return activeActivityIds.contains(activityId);
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Returns the task of the activity, if there is exactly one.
+     */
+    public Optional<Task> findTask(final String taskDefinitionKey) {
+        final List<Task> matching = tasks.stream()
+                .filter(task -> taskDefinitionKey.equals(task.getTaskDefinitionKey()))
+                .collect(Collectors.toList());
+        return matching.size() == 1 ? Optional.of(matching.get(0)) : Optional.empty();
+    }
+
+    public List<Job> getJobs() {
+        return jobs;
+    }
+
+    public List<Incident> getIncidents() {
+        return incidents;
+    }
+
+    /**
+     * Returns the variables of the process instance scope by name, without local variables of child scopes or tasks.
+     */
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    @Override
+    public String toString() {
+        if (ended) {
+            return processInstanceId + ": ended";
+        }
+        return processInstanceId + ": active " + activeActivityIds + ", tasks " + tasks + ", jobs " + jobs
+                + ", incidents " + incidents + ", variables " + variables;
+    }
+
+    public static final class Task {
+
+        private final String id;
+
+        private final String taskDefinitionKey;
+
+        private final String name;
+
+        private final String assignee;
+
+        private Task(final TaskEntity task) {
+            this.id = task.getId();
+            this.taskDefinitionKey = task.getTaskDefinitionKey();
+            this.name = task.getName();
+            this.assignee = task.getAssignee();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getTaskDefinitionKey() {
+            return taskDefinitionKey;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAssignee() {
+            return assignee;
+        }
+
+        @Override
+        public String toString() {
+            return taskDefinitionKey + (assignee == null ? "" : " (" + assignee + ")");
+        }
+    }
+
+    public static final class Job {
+
+        private final String id;
+
+        private final String activityId;
+
+        private final Date dueDate;
+
+        private final int retries;
+
+        private final String exceptionMessage;
+
+        private Job(final JobEntity job) {
+            this.id = job.getId();
+            this.activityId = job.getActivityId();
+            this.dueDate = job.getDuedate() == null ? null : new Date(job.getDuedate().getTime());
+            this.retries = job.getRetries();
+            this.exceptionMessage = job.getExceptionMessage();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getActivityId() {
+            return activityId;
+        }
+
+        /**
+         * Returns the due date, {@code null} if due immediately.
+         */
+        public Date getDueDate() {
+            return dueDate == null ? null : new Date(dueDate.getTime());
+        }
+
+        public int getRetries() {
+            return retries;
+        }
+
+        public String getExceptionMessage() {
+            return exceptionMessage;
+        }
+
+        @Override
+        public String toString() {
+            return activityId + (dueDate == null ? "" : " due " + dueDate.toInstant())
+                    + (exceptionMessage == null ? "" : " failed: " + exceptionMessage);
+        }
+    }
+
+    public static final class Incident {
+
+        private final String id;
+
+        private final String incidentType;
+
+        private final String activityId;
+
+        private final String message;
+
+        private Incident(final IncidentEntity incident) {
+            this.id = incident.getId();
+            this.incidentType = incident.getIncidentType();
+            this.activityId = incident.getActivityId();
+            this.message = incident.getIncidentMessage();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getIncidentType() {
+            return incidentType;
+        }
+
+        public String getActivityId() {
+            return activityId;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return incidentType + " at " + activityId;
+        }
+    }
+
+}
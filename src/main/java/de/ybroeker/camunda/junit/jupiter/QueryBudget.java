@@ -0,0 +1,41 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.lang.annotation.*;
+
+/**
+ * Fails the annotated test if the engine issues more SQL statements than budgeted, e.g. after a change introduced
+ * N+1 queries. Negative values don't limit the statements.
+ *
+ * @see SqlStatementCounts
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Documented
+public @interface QueryBudget {
+
+    int maxSelects() default -1;
+
+    int maxInserts() default -1;
+
+    int maxUpdates() default -1;
+
+    int maxDeletes() default -1;
+
+    int maxTotal() default -1;
+
+}
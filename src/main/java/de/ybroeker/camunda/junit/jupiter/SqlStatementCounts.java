@@ -0,0 +1,52 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+
+/**
+ * The SQL statements issued by the engine during a test, counted from the end of the deployment until the test
+ * finishes. Statements of the extension's cleanup are not counted.
+ *
+ * @see TestProcessEngine#getSqlStatementCounts()
+ * @see QueryBudget
+ */
+public interface SqlStatementCounts {
+
+    long getSelects();
+
+    long getInserts();
+
+    long getUpdates();
+
+    long getDeletes();
+
+    /**
+     * Returns the number of all statements, including those which are neither select, insert, update nor delete.
+     */
+    long getTotal();
+
+    /**
+     * Returns the number of executions of one MyBatis statement, e.g. {@code selectProcessDefinitionById}.
+     */
+    long getCount(String statementId);
+
+    /**
+     * Returns the number of executions of each MyBatis statement, keyed by statement id.
+     */
+    Map<String, Long> getCountsByStatementId();
+
+}
@@ -44,6 +44,17 @@ public class TestProcessApplicationUtil {
         };
     }
 
+    /**
+     * Creates an EmbeddedProcessApplication, which records all execution and task events in eventRecorder.
+     * Unlike the userTaskHolder variants, no events are lost or contended on by concurrent process instances.
+     *
+     * @param eventRecorder the recorder for all events
+     * @return the created EmbeddedProcessApplication
+     */
+    public static EmbeddedProcessApplication processApplication(final EventRecorder eventRecorder) {
+        return processApplication(eventRecorder, eventRecorder);
+    }
+
     /**
      * Creates an EmbeddedProcessApplication with the executionListener and
      * updates userTaskHolder at each created Task with the current Task-Name.
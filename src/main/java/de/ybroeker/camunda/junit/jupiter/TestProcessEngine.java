@@ -15,6 +15,7 @@
  */
 package de.ybroeker.camunda.junit.jupiter;
 
+import java.time.Duration;
 import java.util.*;
 
 import org.camunda.bpm.application.*;
@@ -145,6 +146,101 @@ public interface TestProcessEngine extends ProcessEngineServices {
         return getProcessEngine().getDecisionService();
     }
 
+    /**
+     * Adds a Deployment, which is deleted after the current test.
+     *
+     * @param deployment the deployment to delete after the test
+     * @throws UnsupportedOperationException if not supported by the implementation, e.g. outside of the extension
+     */
+    default void manageDeployment(Deployment deployment) {
+        throw new UnsupportedOperationException("Managed deployments require a process engine of the extension");
+    }
+
+    /**
+     * Returns the SQL statements issued by the engine since the deployment of the current test. Empty unless the test
+     * has a {@link QueryBudget} or counting is enabled by
+     * {@link ProcessEngineExtension#SQL_STATEMENT_COUNTS_ENABLED_PROPERTY}.
+     *
+     * @throws UnsupportedOperationException if not supported by the implementation, e.g. outside of the extension
+     */
+    default SqlStatementCounts getSqlStatementCounts() {
+        throw new UnsupportedOperationException("SQL statement counts require a process engine of the extension");
+    }
+
+    /**
+     * Returns the tenant of the current test, {@code null} unless tests are isolated by tenants.
+     *
+     * @see ProcessEngineExtension#TENANT_ISOLATION_ENABLED_PROPERTY
+     */
+    default String getTenantId() {
+        return null;
+    }
+
+    /**
+     * Scopes the services to the tenant of the current test on the calling thread, e.g. in threads started by the
+     * test. The thread executing the test is already scoped. Does nothing unless tests are isolated by tenants.
+     */
+    default void authenticateTenant() {
+    }
+
+    /**
+     * Enables or disables inline job execution for the calling thread, disabled at the start of each test.
+     * If enabled, async continuations and due timers are executed right after the service call which created them,
+     * on the calling thread, until the process instances reach a wait state. Exceptions of those jobs are thrown by
+     * the service call.
+     *
+     * @throws IllegalStateException         if the engine was not built by the extension
+     * @throws UnsupportedOperationException if not supported by the implementation, e.g. outside of the extension
+     */
+    default void setInlineJobExecution(boolean enabled) {
+        throw new UnsupportedOperationException("Inline job execution requires a process engine of the extension");
+    }
+
+    /**
+     * Executes all jobs which are executable now, acquired in one pass. Jobs created by them are not executed.
+     *
+     * @return the number of executed jobs
+     * @throws UnsupportedOperationException if not supported by the implementation, e.g. outside of the extension
+     */
+    default int executeAllAvailableJobs() {
+        throw new UnsupportedOperationException("Job execution requires a process engine of the extension");
+    }
+
+    /**
+     * Executes jobs until none is executable anymore, i.e. all process instances wait for a user, a message or a
+     * timer due in the future.
+     *
+     * @return the number of executed jobs
+     * @throws UnsupportedOperationException if not supported by the implementation, e.g. outside of the extension
+     */
+    default int runUntilWaitState() {
+        throw new UnsupportedOperationException("Job execution requires a process engine of the extension");
+    }
+
+    /**
+     * Moves the clock forward and executes all timers due until then, in the order of their due dates. Each timer is
+     * executed just after its due date, followed by the jobs executable at that time, so timers created by timers also fire
+     * if they are due within {@code duration}. The clock is reset after the test, tests should lock
+     * {@link ProcessEngineExtension#CLOCK_RESOURCE}.
+     *
+     * @param duration the duration to move the clock forward, must not be negative
+     * @return the number of executed jobs
+     * @throws UnsupportedOperationException if not supported by the implementation, e.g. outside of the extension
+     */
+    default int advanceClockBy(Duration duration) {
+        throw new UnsupportedOperationException("Advancing the clock requires a process engine of the extension");
+    }
+
+    /**
+     * Returns the runtime state of the process instance, gathered in one command context.
+     *
+     * @param processInstanceId the id of the process instance
+     * @return the state, {@link ProcessInstanceSnapshot#isEnded() ended} if the process instance was not found
+     */
+    default ProcessInstanceSnapshot snapshot(String processInstanceId) {
+        return ProcessInstanceSnapshot.take(getProcessEngineConfiguration(), processInstanceId);
+    }
+
     ProcessEngine getProcessEngine();
 
     String getDeploymentId();
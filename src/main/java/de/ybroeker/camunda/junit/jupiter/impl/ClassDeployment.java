@@ -0,0 +1,160 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.test.TestHelper;
+import org.camunda.bpm.engine.repository.Deployment;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * The deployment of a test class annotated with {@link org.camunda.bpm.engine.test.Deployment}, shared by all tests
+ * of the class.
+ * <p>
+ * The class leases one engine for all of its tests and deploys its resources once. After each test only
+ * runtime- and history-data is removed by {@link #cleanRuntimeData()}, the deployment is only redeployed if a test
+ * modified its definitions, see {@link #deleteIfModified()}. Closing removes the deployment,
+ * unless it is cached, and returns the engine to its pool.
+ */
+public final class ClassDeployment implements ExtensionContext.Store.CloseableResource {
+
+    private final ProcessEnginePool processEnginePool;
+
+    private final boolean deploymentCacheEnabled;
+
+    private final String name;
+
+    private final Map<String, byte[]> resources;
+
+    private ProcessEnginePool.Lease lease;
+
+    private Deployment deployment;
+
+    private Set<String> definitionState;
+
+    /**
+     * @param processEnginePool      the pool to lease the engine from
+     * @param deploymentCacheEnabled if the deployment is deployed through the {@link DeploymentCache}
+     * @param name                   the name of the deployment
+     * @param resources              the resources, mapped by name
+     */
+    public ClassDeployment(final ProcessEnginePool processEnginePool,
+                           final boolean deploymentCacheEnabled,
+                           final String name,
+                           final Map<String, byte[]> resources) {
+        this.processEnginePool = processEnginePool;
+        this.deploymentCacheEnabled = deploymentCacheEnabled;
+        this.name = name;
+        this.resources = resources;
+    }
+
+    /**
+     * Returns the engine leased to the class, leases a new one if the previous one was discarded.
+     */
+    public synchronized ProcessEnginePool.Lease getLease() {
+        if (lease == null || lease.isReturned()) {
+            lease = processEnginePool.lease();
+            deployment = null;
+        }
+        return lease;
+    }
+
+    /**
+     * Returns the deployment of the class, deploys it if not yet deployed or removed by a previous test.
+     */
+    public synchronized Deployment getDeployment() {
+        final ProcessEnginePool.Lease currentLease = getLease();
+        if (deployment == null) {
+            if (deploymentCacheEnabled) {
+                deployment = currentLease.getDeploymentCache().deploy(name, resources);
+            } else {
+                deployment = Deployments.deploy(currentLease.getProcessEngine(), name, resources);
+            }
+            definitionState = Deployments.getDefinitionState(currentLease.getProcessEngine(), deployment.getId());
+        }
+        return deployment;
+    }
+
+    /**
+     * Returns the resources of the deployment, mapped by name.
+     */
+    public Map<String, byte[]> getResources() {
+        return resources;
+    }
+
+    public synchronized boolean isDeployment(final Deployment other) {
+        return deployment != null && other != null && deployment.getId().equals(other.getId());
+    }
+
+    /**
+     * Removes all process instances of the deployment, including their history.
+     * The deployment is removed if case instances remain, and redeployed for the next test.
+     */
+    public synchronized void cleanRuntimeData() {
+        if (deployment != null && !Deployments.cleanRuntimeData(lease.getProcessEngine(), deployment.getId())) {
+            delete();
+        }
+    }
+
+    /**
+     * Removes the deployment if the {@link Deployments#getDefinitionState(ProcessEngine, String) state of its
+     * definitions} changed since it was deployed, e.g. because a test suspended them. It is redeployed for the next
+     * test. Must be called after the runtime data of the test was removed.
+     */
+    public synchronized void deleteIfModified() {
+        if (deployment == null) {
+            return;
+        }
+        final DeploymentCache deploymentCache = lease.getDeploymentCache();
+        if (deploymentCache.isCached(deployment)) {
+            if (deploymentCache.evictIfModified(deployment)) {
+                deployment = null;
+            }
+        } else if (!definitionState.equals(Deployments.getDefinitionState(lease.getProcessEngine(),
+                                                                            deployment.getId()))) {
+            delete();
+        }
+    }
+
+    /**
+     * Removes the deployment unless it is cached, it is redeployed for the next test.
+     */
+    public synchronized void delete() {
+        if (deployment == null) {
+            return;
+        }
+        if (!lease.getDeploymentCache().isCached(deployment)) {
+            final ProcessEngine processEngine = lease.getProcessEngine();
+            TestHelper.deleteDeployment(processEngine, deployment.getId());
+        }
+        deployment = null;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (lease == null) {
+            return;
+        }
+        if (!lease.isReturned()) {
+            delete();
+        }
+        lease.close();
+        lease = null;
+    }
+
+}
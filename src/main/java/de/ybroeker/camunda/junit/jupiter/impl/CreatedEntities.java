@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.batch.BatchEntity;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cmmn.entity.runtime.CaseExecutionEntity;
+import org.camunda.bpm.engine.impl.history.HistoryLevel;
+import org.camunda.bpm.engine.impl.history.event.HistoricDecisionInstanceEntity;
+import org.camunda.bpm.engine.impl.history.event.UserOperationLogEntryEventEntity;
+import org.camunda.bpm.engine.impl.jobexecutor.TimerStartEventJobHandler;
+import org.camunda.bpm.engine.impl.persistence.entity.ExecutionEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.JobEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.TaskEntity;
+
+/**
+ * Ids of the entities created on one engine during a test, recorded by a {@link CreatedEntityTracker}.
+ * <p>
+ * {@link #delete(ProcessEngine)} removes exactly these entities, including their history, instead of searching all
+ * process instances of a deployment. Other entities are owned by one of them, e.g. variables, incidents and jobs
+ * of process instances, or by a deployment, e.g. jobs of timer start events. Jobs of definitions, e.g. scheduled
+ * suspensions, are deleted with their job log, as they only reference the definition in their configuration.
+ * User operation log entries outside of process instances are deleted as well.
+ */
+public final class CreatedEntities {
+
+    private static final String DELETE_REASON = "Cleanup after test";
+
+    private final Set<String> processInstanceIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> standaloneTaskIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> jobIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> batchIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> historicDecisionInstanceIds = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> userOperationLogEntryIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean caseInstanceCreated;
+
+    void add(final Object entity) {
+        if (entity instanceof ExecutionEntity) {
+            final ExecutionEntity execution = (ExecutionEntity) entity;
+            if (execution.getId().equals(execution.getProcessInstanceId())) {
+                processInstanceIds.add(execution.getId());
+            }
+        } else if (entity instanceof TaskEntity) {
+            final TaskEntity task = (TaskEntity) entity;
+            if (task.getProcessInstanceId() == null && task.getCaseInstanceId() == null) {
+                standaloneTaskIds.add(task.getId());
+            }
+        } else if (entity instanceof JobEntity) {
+            final JobEntity job = (JobEntity) entity;
+            //jobs of timer start events are kept and removed with their deployment
+            if (job.getProcessInstanceId() == null
+                    && !TimerStartEventJobHandler.TYPE.equals(job.getJobHandlerType())) {
+                jobIds.add(job.getId());
+            }
+        } else if (entity instanceof BatchEntity) {
+            batchIds.add(((BatchEntity) entity).getId());
+        } else if (entity instanceof HistoricDecisionInstanceEntity) {
+            historicDecisionInstanceIds.add(((HistoricDecisionInstanceEntity) entity).getId());
+        } else if (entity instanceof UserOperationLogEntryEventEntity) {
+            final UserOperationLogEntryEventEntity entry = (UserOperationLogEntryEventEntity) entity;
+            //entries of process instances are deleted with their history
+            if (entry.getProcessInstanceId() == null) {
+                userOperationLogEntryIds.add(entry.getId());
+            }
+        } else if (entity instanceof CaseExecutionEntity) {
+            caseInstanceCreated = true;
+        }
+    }
+
+    public boolean isEmpty() {
+        return processInstanceIds.isEmpty() && standaloneTaskIds.isEmpty() && jobIds.isEmpty()
+                && batchIds.isEmpty() && historicDecisionInstanceIds.isEmpty() && userOperationLogEntryIds.isEmpty()
+                && !caseInstanceCreated;
+    }
+
+    /**
+     * Deletes all created entities, which still exist, including their history.
+     * Case instances can't be removed without deleting their deployment.
+     *
+     * @param processEngine the engine, on which the entities were created
+     * @return {@code true} if all entities were removed, {@code false} if case instances were created
+     */
+    public boolean delete(final ProcessEngine processEngine) {
+        for (final String batchId : batchIds) {
+            if (processEngine.getManagementService().createBatchQuery().batchId(batchId).count() > 0) {
+                processEngine.getManagementService().deleteBatch(batchId, true);
+            } else if (processEngine.getHistoryService().createHistoricBatchQuery().batchId(batchId).count() > 0) {
+                processEngine.getHistoryService().deleteHistoricBatch(batchId);
+            }
+        }
+
+        final List<String> processInstances = new ArrayList<>(processInstanceIds);
+        if (!processInstances.isEmpty()) {
+            processEngine.getRuntimeService()
+                    .deleteProcessInstancesIfExists(processInstances, DELETE_REASON, true, true, false);
+            if (isHistoryEnabled(processEngine)) {
+                processEngine.getHistoryService().deleteHistoricProcessInstancesIfExists(processInstances);
+            }
+        }
+
+        if (!standaloneTaskIds.isEmpty()) {
+            processEngine.getTaskService().deleteTasks(standaloneTaskIds, true);
+        }
+
+        for (final String jobId : jobIds) {
+            if (processEngine.getManagementService().createJobQuery().jobId(jobId).count() > 0) {
+                processEngine.getManagementService().deleteJob(jobId);
+            }
+        }
+        if (!jobIds.isEmpty() && isHistoryEnabled(processEngine)) {
+            //deleting a job logs its deletion, so the log is removed afterwards
+            getProcessEngineConfiguration(processEngine).getCommandExecutorTxRequired().execute(commandContext -> {
+                jobIds.forEach(commandContext.getHistoricJobLogManager()::deleteHistoricJobLogByJobId);
+                return null;
+            });
+        }
+
+        for (final String entryId : userOperationLogEntryIds) {
+            processEngine.getHistoryService().deleteUserOperationLogEntry(entryId);
+        }
+
+        if (!historicDecisionInstanceIds.isEmpty()) {
+            processEngine.getHistoryService()
+                    .deleteHistoricDecisionInstancesBulk(new ArrayList<>(historicDecisionInstanceIds));
+        }
+
+        return !caseInstanceCreated;
+    }
+
+    private static boolean isHistoryEnabled(final ProcessEngine processEngine) {
+        return getProcessEngineConfiguration(processEngine).getHistoryLevel() != HistoryLevel.HISTORY_LEVEL_NONE;
+    }
+
+    private static ProcessEngineConfigurationImpl getProcessEngineConfiguration(final ProcessEngine processEngine) {
+        return ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration();
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.*;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * MyBatis-interceptor, which records the ids of the entities inserted by one engine, see {@link CreatedEntities}.
+ * <p>
+ * Recording never stops, each {@link #drain()} returns the entities created since the previous one.
+ */
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public final class CreatedEntityTracker implements Interceptor {
+
+    private final AtomicReference<CreatedEntities> createdEntities = new AtomicReference<>(new CreatedEntities());
+
+    private CreatedEntityTracker() {
+    }
+
+    /**
+     * Adds a new tracker to the SQL session factory of the engine.
+     */
+    public static CreatedEntityTracker install(final ProcessEngineConfigurationImpl configuration) {
+        final CreatedEntityTracker tracker = new CreatedEntityTracker();
+        configuration.getSqlSessionFactory().getConfiguration().addInterceptor(tracker);
+        return tracker;
+    }
+
+    /**
+     * Returns the entities created since the previous call and starts recording into new ones.
+     */
+    public CreatedEntities drain() {
+        return createdEntities.getAndSet(new CreatedEntities());
+    }
+
+    @Override
+    public Object intercept(final Invocation invocation) throws Throwable {
+        final MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        if (statement.getSqlCommandType() == SqlCommandType.INSERT) {
+            createdEntities.get().add(invocation.getArgs()[1]);
+        }
+        return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(final Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(final Properties properties) {
+        //no properties
+    }
+
+}
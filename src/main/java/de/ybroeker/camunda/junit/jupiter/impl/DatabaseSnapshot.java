@@ -0,0 +1,170 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.sql.*;
+import java.util.*;
+import javax.sql.DataSource;
+
+import org.camunda.bpm.engine.ProcessEngineException;
+
+/**
+ * Snapshot of the rows of all tables of an H2-database, taken before the first test which resets the engine.
+ * <p>
+ * {@link #restore(DataSource)} truncates all tables and re-inserts the snapshot, which is much faster than
+ * dropping and creating the schema or building a new engine.
+ */
+public final class DatabaseSnapshot {
+
+    private final Map<String, List<Object[]>> rows;
+
+    private DatabaseSnapshot(final Map<String, List<Object[]>> rows) {
+        this.rows = rows;
+    }
+
+    /**
+     * Takes a snapshot of all tables in the current schema.
+     *
+     * @param dataSource the data source of an H2-database
+     * @return the snapshot
+     */
+    public static DatabaseSnapshot create(final DataSource dataSource) {
+        final Map<String, List<Object[]>> rows = new LinkedHashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            for (final String table : findTables(connection)) {
+                rows.put(table, readRows(connection, table));
+            }
+        } catch (SQLException e) {
+            throw new ProcessEngineException("Could not create snapshot of database", e);
+        }
+        return new DatabaseSnapshot(rows);
+    }
+
+    /**
+     * Returns if the database behind {@code jdbcUrl} can be snapshotted.
+     */
+    public static boolean isSupported(final String jdbcUrl) {
+        return jdbcUrl != null && jdbcUrl.startsWith("jdbc:h2:");
+    }
+
+    private static List<String> findTables(final Connection connection) throws SQLException {
+        final List<String> tables = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                     + "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_TYPE = 'TABLE'")) {
+            while (resultSet.next()) {
+                tables.add(resultSet.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    private static List<Object[]> readRows(final Connection connection, final String table) throws SQLException {
+        final List<Object[]> tableRows = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table)) {
+            final int columns = resultSet.getMetaData().getColumnCount();
+            while (resultSet.next()) {
+                final Object[] row = new Object[columns];
+                for (int i = 0; i < columns; i++) {
+                    row[i] = detach(resultSet.getObject(i + 1));
+                }
+                tableRows.add(row);
+            }
+        }
+        return tableRows;
+    }
+
+    /**
+     * Copies LOBs, which are only valid as long as their connection is open.
+     */
+    private static Object detach(final Object value) throws SQLException {
+        if (value instanceof Blob) {
+            return ((Blob) value).getBytes(1, (int) ((Blob) value).length());
+        }
+        if (value instanceof Clob) {
+            return ((Clob) value).getSubString(1, (int) ((Clob) value).length());
+        }
+        return value;
+    }
+
+    /**
+     * Truncates all tables of the snapshot and restores their rows.
+     * <p>
+     * If the restore fails, it is rolled back as far as possible and referential integrity is enabled again, but
+     * as H2 commits each {@code TRUNCATE}, the database must be considered broken.
+     *
+     * @param dataSource the data source of the snapshotted database
+     * @throws ProcessEngineException if the snapshot could not be restored
+     */
+    public void restore(final DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            final boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET REFERENTIAL_INTEGRITY FALSE");
+                try {
+                    for (final String table : rows.keySet()) {
+                        statement.execute("TRUNCATE TABLE " + table);
+                    }
+                    for (final Map.Entry<String, List<Object[]>> table : rows.entrySet()) {
+                        insertRows(connection, table.getKey(), table.getValue());
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    rollback(connection, e);
+                    throw e;
+                } finally {
+                    statement.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new ProcessEngineException("Could not restore snapshot of database", e);
+        }
+    }
+
+    private static void rollback(final Connection connection, final Exception failure) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private static void insertRows(final Connection connection, final String table, final List<Object[]> tableRows)
+            throws SQLException {
+        if (tableRows.isEmpty()) {
+            return;
+        }
+        final StringJoiner placeholders = new StringJoiner(", ", "(", ")");
+        for (int i = 0; i < tableRows.get(0).length; i++) {
+            placeholders.add("?");
+        }
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table + " VALUES " + placeholders)) {
+            for (final Object[] row : tableRows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.RepositoryService;
+import org.camunda.bpm.engine.impl.test.TestHelper;
+import org.camunda.bpm.engine.repository.Deployment;
+import org.camunda.bpm.engine.repository.ResourceDefinition;
+
+/**
+ * Caches deployments of one {@link ProcessEngine}, keyed by the {@link Deployments#fingerprint(Map) fingerprint}
+ * of their resources.
+ * <p>
+ * A cached deployment stays deployed between tests, only the runtime- and history-data of its
+ * process instances is removed, see {@link CreatedEntities} and {@link #cleanRuntimeData(Deployment)}.
+ * Deployments, whose definitions were modified by a test, e.g. suspended, are evicted by
+ * {@link #evictIfModified(Deployment)}.
+ * Deploying resources with definition-keys of an cached deployment evicts that deployment before deploying,
+ * so the definitions of the current test are the only ones with their keys and start with version 1.
+ */
+public class DeploymentCache {
+
+    private final ProcessEngine processEngine;
+
+    private final Map<String, CachedDeployment> deployments = new HashMap<>();
+
+    public DeploymentCache(final ProcessEngine processEngine) {
+        this.processEngine = processEngine;
+    }
+
+    /**
+     * Returns the deployment with the given resources, deploys them if not already cached.
+     *
+     * @param name      the name used for new deployments
+     * @param resources the resources, mapped by name
+     * @return the cached or new Deployment
+     */
+    public synchronized Deployment deploy(final String name, final Map<String, byte[]> resources) {
+        final String fingerprint = Deployments.fingerprint(resources);
+
+        final CachedDeployment cached = deployments.get(fingerprint);
+        if (cached != null) {
+            return cached.deployment;
+        }
+
+        //before deploying, so definitions of the new deployment start with version 1 again
+        evictConflicting(Deployments.findDefinitionKeys(resources));
+        final Deployment deployment = Deployments.deploy(processEngine, name, resources);
+        final CachedDeployment cachedDeployment = new CachedDeployment(deployment, processEngine);
+
+        if (cachedDeployment.cacheable) {
+            deployments.put(fingerprint, cachedDeployment);
+        }
+        return deployment;
+    }
+
+    /**
+     * Deletes all cached deployments, which define any of the {@code definitionKeys}.
+     */
+    private void evictConflicting(final Set<String> definitionKeys) {
+        final Iterator<CachedDeployment> iterator = deployments.values().iterator();
+        while (iterator.hasNext()) {
+            final CachedDeployment other = iterator.next();
+            if (!Collections.disjoint(other.definitionKeys, definitionKeys)) {
+                TestHelper.deleteDeployment(processEngine, other.deployment.getId());
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized boolean isCached(final Deployment deployment) {
+        return findCached(deployment).isPresent();
+    }
+
+    private Optional<CachedDeployment> findCached(final Deployment deployment) {
+        return deployments.values().stream()
+                .filter(cached -> cached.deployment.getId().equals(deployment.getId()))
+                .findFirst();
+    }
+
+    /**
+     * Removes all process instances of the cached deployment, including their history.
+     */
+    public void cleanRuntimeData(final Deployment deployment) {
+        Deployments.cleanRuntimeData(processEngine, deployment.getId());
+    }
+
+    /**
+     * Deletes the cached deployment if the {@link Deployments#getDefinitionState(ProcessEngine, String) state of its
+     * definitions} changed since it was deployed. Must be called after its runtime data was removed.
+     *
+     * @return {@code true} if the deployment was deleted
+     */
+    public synchronized boolean evictIfModified(final Deployment deployment) {
+        final Optional<CachedDeployment> cached = findCached(deployment);
+        if (!cached.isPresent()
+                || cached.get().definitionState.equals(Deployments.getDefinitionState(processEngine, deployment.getId()))) {
+            return false;
+        }
+        TestHelper.deleteDeployment(processEngine, deployment.getId());
+        deployments.values().remove(cached.get());
+        return true;
+    }
+
+    /**
+     * Forgets all cached deployments without deleting them, e.g. after they were removed from the database.
+     */
+    public synchronized void invalidate() {
+        deployments.clear();
+    }
+
+    /**
+     * Deletes all cached deployments.
+     */
+    public synchronized void clear() {
+        for (final CachedDeployment cached : deployments.values()) {
+            TestHelper.deleteDeployment(processEngine, cached.deployment.getId());
+        }
+        deployments.clear();
+    }
+
+    private static final class CachedDeployment {
+
+        private final Deployment deployment;
+
+        private final Set<String> definitionKeys = new HashSet<>();
+
+        /**
+         * Case instances cannot be deleted without their deployment, so deployments with case definitions are
+         * never reused.
+         */
+        private final boolean cacheable;
+
+        private final Set<String> definitionState;
+
+        private CachedDeployment(final Deployment deployment, final ProcessEngine processEngine) {
+            this.deployment = deployment;
+            this.definitionState = Deployments.getDefinitionState(processEngine, deployment.getId());
+
+            final RepositoryService repositoryService = processEngine.getRepositoryService();
+
+            final List<? extends ResourceDefinition> processDefinitions = repositoryService
+                    .createProcessDefinitionQuery().deploymentId(deployment.getId()).list();
+            final List<? extends ResourceDefinition> decisionDefinitions = repositoryService
+                    .createDecisionDefinitionQuery().deploymentId(deployment.getId()).list();
+            final List<? extends ResourceDefinition> caseDefinitions = repositoryService
+                    .createCaseDefinitionQuery().deploymentId(deployment.getId()).list();
+
+            this.cacheable = caseDefinitions.isEmpty();
+
+            Stream.of(processDefinitions, decisionDefinitions, caseDefinitions)
+                    .flatMap(List::stream)
+                    .map(ResourceDefinition::getKey)
+                    .forEach(definitionKeys::add);
+        }
+    }
+
+}
@@ -15,17 +15,41 @@
  */
 package de.ybroeker.camunda.junit.jupiter.impl;
 
-import java.io.InputStream;
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.function.*;
 import java.util.stream.*;
 
 import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.history.HistoricProcessInstance;
+import org.camunda.bpm.engine.impl.bpmn.deployer.BpmnDeployer;
+import org.camunda.bpm.engine.impl.cmmn.deployer.CmmnDeployer;
+import org.camunda.bpm.engine.impl.dmn.deployer.DecisionDefinitionDeployer;
+import org.camunda.bpm.engine.impl.jobexecutor.TimerActivateJobDefinitionHandler;
+import org.camunda.bpm.engine.impl.jobexecutor.TimerActivateProcessDefinitionHandler;
+import org.camunda.bpm.engine.impl.jobexecutor.TimerSuspendJobDefinitionHandler;
+import org.camunda.bpm.engine.impl.jobexecutor.TimerSuspendProcessDefinitionHandler;
+import org.camunda.bpm.engine.impl.persistence.entity.JobEntity;
 import org.camunda.bpm.engine.impl.test.TestHelper;
+import org.camunda.bpm.engine.management.JobDefinition;
 import org.camunda.bpm.engine.repository.DeploymentBuilder;
+import org.camunda.bpm.engine.repository.ProcessDefinition;
+import org.camunda.bpm.engine.runtime.Job;
+import org.camunda.bpm.engine.runtime.ProcessInstance;
 import org.camunda.bpm.engine.test.Deployment;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.cmmn.Cmmn;
+import org.camunda.bpm.model.cmmn.instance.Case;
+import org.camunda.bpm.model.dmn.Dmn;
+import org.camunda.bpm.model.dmn.instance.Decision;
+import org.camunda.bpm.model.xml.ModelException;
+import org.camunda.bpm.model.xml.ModelInstance;
+import org.camunda.bpm.model.xml.instance.ModelElementInstance;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.extension.ExtensionContext;
 
@@ -33,34 +57,316 @@ import static org.junit.platform.commons.support.AnnotationSupport.findAnnotatio
 
 public class Deployments {
 
+    private static final String DELETE_REASON = "Cleanup after test";
+
+    /**
+     * Types of jobs, which change the suspension state of definitions and reference them only in their configuration.
+     */
+    private static final Set<String> SUSPENSION_STATE_JOB_TYPES = new HashSet<>(Arrays.asList(
+            TimerSuspendProcessDefinitionHandler.TYPE,
+            TimerActivateProcessDefinitionHandler.TYPE,
+            TimerSuspendJobDefinitionHandler.TYPE,
+            TimerActivateJobDefinitionHandler.TYPE));
+
     public static boolean hasDeployments(final ExtensionContext extensionContext) {
         return findDeploymentAnnotation(extensionContext).isPresent();
     }
 
-    public static org.camunda.bpm.engine.repository.Deployment loadDeployments(final ExtensionContext extensionContext, final ProcessEngine processEngine) {
-        Map<String, InputStream> resources = findResources(extensionContext);
+    public static org.camunda.bpm.engine.repository.Deployment deploy(final ProcessEngine processEngine, final String name, final Map<String, byte[]> resources) {
+        return deploy(processEngine, name, resources, null);
+    }
 
+    /**
+     * Deploys the resources for the tenant, or for all tenants if {@code tenantId} is {@code null}.
+     */
+    public static org.camunda.bpm.engine.repository.Deployment deploy(final ProcessEngine processEngine, final String name, final Map<String, byte[]> resources, final String tenantId) {
         DeploymentBuilder deploymentBuilder = processEngine.getRepositoryService()
                 .createDeployment()
-                .name(extensionContext.getUniqueId());
+                .name(name)
+                .tenantId(tenantId);
 
-        for (final Map.Entry<String, InputStream> resource : resources.entrySet()) {
-            deploymentBuilder.addInputStream(resource.getKey(), resource.getValue());
+        for (final Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            deploymentBuilder.addInputStream(resource.getKey(), new ByteArrayInputStream(resource.getValue()));
         }
 
         return deploymentBuilder.deploy();
     }
 
-    private static Map<String, InputStream> findResources(final ExtensionContext extensionContext) {
-        final Optional<Deployment> deployment = findDeploymentAnnotation(extensionContext);
+    /**
+     * Removes all process instances of the deployment, including their history, and scheduled changes of the
+     * suspension state of its definitions.
+     * Case instances can't be removed without deleting the deployment.
+     *
+     * @param processEngine the engine of the deployment
+     * @param deploymentId  the id of the deployment
+     * @return {@code true} if all runtime data was removed, {@code false} if case instances remain
+     */
+    public static boolean cleanRuntimeData(final ProcessEngine processEngine, final String deploymentId) {
+        final List<String> processInstanceIds = processEngine.getRuntimeService().createProcessInstanceQuery()
+                .deploymentId(deploymentId)
+                .list().stream()
+                .map(ProcessInstance::getId)
+                .collect(Collectors.toList());
+        if (!processInstanceIds.isEmpty()) {
+            processEngine.getRuntimeService()
+                    .deleteProcessInstancesIfExists(processInstanceIds, DELETE_REASON, true, true, false);
+        }
+
+        final List<ProcessDefinition> processDefinitions = processEngine.getRepositoryService()
+                .createProcessDefinitionQuery()
+                .deploymentId(deploymentId)
+                .list();
+        for (final ProcessDefinition processDefinition : processDefinitions) {
+            final List<String> historicProcessInstanceIds = processEngine.getHistoryService()
+                    .createHistoricProcessInstanceQuery()
+                    .processDefinitionId(processDefinition.getId())
+                    .list().stream()
+                    .map(HistoricProcessInstance::getId)
+                    .collect(Collectors.toList());
+            if (!historicProcessInstanceIds.isEmpty()) {
+                processEngine.getHistoryService().deleteHistoricProcessInstancesIfExists(historicProcessInstanceIds);
+            }
+        }
+        deleteSuspensionStateJobs(processEngine, processDefinitions);
+
+        processEngine.getRepositoryService().createDecisionDefinitionQuery()
+                .deploymentId(deploymentId)
+                .list()
+                .forEach(decisionDefinition -> processEngine.getHistoryService()
+                        .deleteHistoricDecisionInstanceByDefinitionId(decisionDefinition.getId()));
+
+        return processEngine.getCaseService().createCaseInstanceQuery().deploymentId(deploymentId).count() == 0;
+    }
+
+    private static void deleteSuspensionStateJobs(final ProcessEngine processEngine,
+                                                  final List<ProcessDefinition> processDefinitions) {
+        if (processDefinitions.isEmpty()) {
+            return;
+        }
+        final Set<String> references = new HashSet<>();
+        for (final ProcessDefinition processDefinition : processDefinitions) {
+            references.add(processDefinition.getId());
+            references.add(processDefinition.getKey());
+            processEngine.getManagementService().createJobDefinitionQuery()
+                    .processDefinitionId(processDefinition.getId())
+                    .list().stream()
+                    .map(JobDefinition::getId)
+                    .forEach(references::add);
+        }
+        processEngine.getManagementService().createJobQuery().timers().list().stream()
+                .filter(job -> job instanceof JobEntity && job.getProcessInstanceId() == null)
+                .map(JobEntity.class::cast)
+                .filter(job -> SUSPENSION_STATE_JOB_TYPES.contains(job.getJobHandlerType()))
+                .filter(job -> references.stream()
+                        .anyMatch(reference -> job.getJobHandlerConfigurationRaw().contains("\"" + reference + "\"")))
+                .forEach(job -> processEngine.getManagementService().deleteJob(job.getId()));
+    }
+
+    /**
+     * Returns the state of the definitions of the deployment, which tests can change without starting process
+     * instances: the suspension state of its process and job definitions, and the jobs of its process definitions,
+     * e.g. of timer start events. Without process instances, the state stays equal until a definition is modified.
+     *
+     * @param processEngine the engine of the deployment
+     * @param deploymentId  the id of the deployment
+     * @return the state as comparable set of descriptions
+     */
+    public static Set<String> getDefinitionState(final ProcessEngine processEngine, final String deploymentId) {
+        final Set<String> state = new TreeSet<>();
+        final List<ProcessDefinition> processDefinitions = processEngine.getRepositoryService()
+                .createProcessDefinitionQuery()
+                .deploymentId(deploymentId)
+                .list();
+        for (final ProcessDefinition processDefinition : processDefinitions) {
+            state.add("process definition " + processDefinition.getId() + " suspended " + processDefinition.isSuspended());
+            for (final JobDefinition jobDefinition : processEngine.getManagementService().createJobDefinitionQuery()
+                    .processDefinitionId(processDefinition.getId()).list()) {
+                state.add("job definition " + jobDefinition.getId() + " suspended " + jobDefinition.isSuspended());
+            }
+            processEngine.getManagementService().createJobQuery()
+                    .processDefinitionId(processDefinition.getId())
+                    .list().stream()
+                    .filter(job -> job.getProcessInstanceId() == null)
+                    .map(Job::getId)
+                    .forEach(jobId -> state.add("job " + jobId));
+        }
+        return state;
+    }
+
+    /**
+     * Calculates a hash over names and contents of the given resources.
+     * Resource sets with equal fingerprints result in equal deployments.
+     *
+     * @param resources the resources, mapped by name
+     * @return the hex-encoded fingerprint
+     */
+    public static String fingerprint(final Map<String, byte[]> resources) {
+        final MessageDigest digest = sha256();
+        for (final Map.Entry<String, byte[]> resource : new TreeMap<>(resources).entrySet()) {
+            final byte[] name = resource.getKey().getBytes(StandardCharsets.UTF_8);
+            digest.update(intToBytes(name.length));
+            digest.update(name);
+            digest.update(intToBytes(resource.getValue().length));
+            digest.update(resource.getValue());
+        }
+
+        final StringBuilder fingerprint = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            fingerprint.append(String.format("%02x", b));
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * Reads the keys of the process, case and decision definitions defined by the resources, without deploying them.
+     * Resources which can't be parsed are skipped, their errors are reported by the deployment.
+     *
+     * @param resources the resources, mapped by name
+     * @return the definition keys
+     */
+    public static Set<String> findDefinitionKeys(final Map<String, byte[]> resources) {
+        final Set<String> keys = new HashSet<>();
+        for (final Map.Entry<String, byte[]> resource : resources.entrySet()) {
+            final String name = resource.getKey();
+            try {
+                if (isBpmnResource(name)) {
+                    findIds(Bpmn.readModelFromStream(new ByteArrayInputStream(resource.getValue())),
+                            org.camunda.bpm.model.bpmn.instance.Process.class, keys);
+                } else if (Stream.of(CmmnDeployer.CMMN_RESOURCE_SUFFIXES).anyMatch(name::endsWith)) {
+                    findIds(Cmmn.readModelFromStream(new ByteArrayInputStream(resource.getValue())), Case.class, keys);
+                } else if (Stream.of(DecisionDefinitionDeployer.DMN_RESOURCE_SUFFIXES).anyMatch(name::endsWith)) {
+                    findIds(Dmn.readModelFromStream(new ByteArrayInputStream(resource.getValue())), Decision.class, keys);
+                }
+            } catch (ModelException e) {
+                //not deployable, the deployment fails anyway
+            }
+        }
+        return keys;
+    }
+
+    private static void findIds(final ModelInstance modelInstance,
+                                final Class<? extends ModelElementInstance> type,
+                                final Set<String> ids) {
+        for (final ModelElementInstance element : modelInstance.getModelElementsByType(type)) {
+            ids.add(element.getAttributeValue("id"));
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ProcessEngineException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] intToBytes(final int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    /**
+     * Returns the resources deployed for the current test.
+     */
+    public static Map<String, byte[]> findResources(final ExtensionContext extensionContext) {
+        return findResources(extensionContext.getRequiredTestClass(), extensionContext.getRequiredTestMethod());
+    }
+
+    /**
+     * Returns the resources deployed for the test method, an empty map if neither method nor class are annotated
+     * with {@link Deployment}.
+     */
+    static Map<String, byte[]> findResources(final Class<?> testClass, final Method testMethod) {
+        final Optional<Deployment> deployment = Stream.of(testMethod, testClass)
+                .map(element -> findAnnotation(element, Deployment.class))
+                .filter(Optional::isPresent).map(Optional::get)
+                .findFirst();
+        if (!deployment.isPresent()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, byte[]> resources = new TreeMap<>();
+        resources.putAll(findExplicitResources(testClass, deployment.get().resources()));
+        resources.putAll(findMethodResources(testClass, testMethod));
+        resources.putAll(findClassResources(testClass));
+        return resources;
+    }
+
+    /**
+     * Returns the {@link #fingerprint(Map) fingerprint} of the resources deployed for the test method.
+     * Tests with equal fingerprints can reuse the same deployment.
+     */
+    public static String fingerprint(final Class<?> testClass, final Method testMethod) {
+        return fingerprint(findResources(testClass, testMethod));
+    }
+
+    /**
+     * Returns the path on the classpath of a resource deployed for a test of {@code testClass}.
+     * Like the deployed resources, {@code resourceName} is resolved relative to the test class first.
+     */
+    public static String getResourcePath(final Class<?> testClass, final String resourceName) {
+        if (resourceName.startsWith("/")) {
+            return resourceName.substring(1);
+        }
+        if (!ResourceIndex.of(testClass).findClassResource(resourceName).isPresent()) {
+            return resourceName;
+        }
+        final String className = testClass.getName();
+        final int packageEnd = className.lastIndexOf('.');
+        return packageEnd < 0
+                ? resourceName
+                : className.substring(0, packageEnd).replace('.', '/') + "/" + resourceName;
+    }
+
+    /**
+     * Returns if the resource is deployed as BPMN process by the engine, judged by its name.
+     */
+    public static boolean isBpmnResource(final String resourceName) {
+        return Stream.of(BpmnDeployer.BPMN_RESOURCE_SUFFIXES).anyMatch(resourceName::endsWith);
+    }
+
+    /**
+     * Returns if the test class itself is annotated with {@link Deployment}.
+     */
+    public static boolean hasClassDeployment(final Class<?> testClass) {
+        return findAnnotation(testClass, Deployment.class).isPresent();
+    }
+
+    /**
+     * Returns if the test method itself is annotated with {@link Deployment}.
+     */
+    public static boolean hasMethodDeployment(final ExtensionContext extensionContext) {
+        return findAnnotation(extensionContext.getTestMethod(), Deployment.class).isPresent();
+    }
+
+    /**
+     * Returns the resources of the {@link Deployment}-annotation of the test class:
+     * its explicit resources and the resources named like the class.
+     */
+    public static Map<String, byte[]> findClassDeploymentResources(final Class<?> testClass) {
+        final Optional<Deployment> deployment = findAnnotation(testClass, Deployment.class);
+        if (!deployment.isPresent()) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, byte[]> resources = new TreeMap<>();
+        resources.putAll(findExplicitResources(testClass, deployment.get().resources()));
+        resources.putAll(findClassResources(testClass));
+        return resources;
+    }
+
+    /**
+     * Returns the resources of the {@link Deployment}-annotation of the test method:
+     * its explicit resources and the resources named like the method.
+     */
+    public static Map<String, byte[]> findMethodDeploymentResources(final ExtensionContext extensionContext) {
+        final Optional<Deployment> deployment = findAnnotation(extensionContext.getTestMethod(), Deployment.class);
         if (!deployment.isPresent()) {
             return Collections.emptyMap();
         }
 
-        Map<String, InputStream> resources = new HashMap<>();
+        Map<String, byte[]> resources = new TreeMap<>();
         resources.putAll(findExplicitResources(extensionContext.getRequiredTestClass(), deployment.get().resources()));
         resources.putAll(findMethodResources(extensionContext.getRequiredTestClass(), extensionContext.getRequiredTestMethod()));
-        resources.putAll(findClassResources(extensionContext.getRequiredTestClass()));
         return resources;
     }
 
@@ -72,50 +378,45 @@ public class Deployments {
     }
 
 
-    private static Map<String, InputStream> findExplicitResources(Class<?> testClazz, final String... resources) {
-        Map<String, InputStream> map = new HashMap<>();
+    private static Map<String, byte[]> findExplicitResources(Class<?> testClazz, final String... resources) {
+        Map<String, byte[]> map = new HashMap<>();
+        ResourceIndex resourceIndex = ResourceIndex.of(testClazz);
 
         for (final String resource : resources) {
-            findResource(resource, testClazz.getClassLoader()::getResourceAsStream)
-                    .ifPresent(stream -> map.put(resource, stream));
-
-            findResource(resource, testClazz::getResourceAsStream)
-                    .ifPresent(stream -> map.put(resource, stream));
+            Optional<byte[]> bytes = resourceIndex.findClassResource(resource);
+            if (!bytes.isPresent()) {
+                bytes = resourceIndex.findClassLoaderResource(resource);
+            }
+            bytes.ifPresent(content -> map.put(resource, content));
         }
 
         return map;
     }
 
-    private static Map<String, InputStream> findMethodResources(Class<?> testClazz, Method method) {
+    private static Map<String, byte[]> findMethodResources(Class<?> testClazz, Method method) {
         String resourceName = testClazz.getSimpleName() + "." + method.getName();
         return findResources(method, testClazz, resourceName);
     }
 
-    private static Map<String, InputStream> findClassResources(Class<?> testClazz) {
+    private static Map<String, byte[]> findClassResources(Class<?> testClazz) {
         final String resourceName = testClazz.getSimpleName();
         return findResources(testClazz, testClazz, resourceName);
     }
 
     @NotNull
-    private static Map<String, InputStream> findResources(final AnnotatedElement element, final Class<?> testClazz, final String resourceName) {
+    private static Map<String, byte[]> findResources(final AnnotatedElement element, final Class<?> testClazz, final String resourceName) {
         if (!element.isAnnotationPresent(Deployment.class)) {
             return Collections.emptyMap();
         }
 
-        Map<String, InputStream> map = new HashMap<>();
+        Map<String, byte[]> map = new HashMap<>();
+        ResourceIndex resourceIndex = ResourceIndex.of(testClazz);
         for (final String suffix : TestHelper.RESOURCE_SUFFIXES) {
             String resource = resourceName + "." + suffix;
-            InputStream stream = testClazz.getResourceAsStream(resource);
-            if (stream != null) {
-                map.put(resource, stream);
-            }
+            resourceIndex.findClassResource(resource)
+                    .ifPresent(bytes -> map.put(resource, bytes));
         }
         return map;
     }
 
-    private static Optional<InputStream> findResource(String name, Function<String, InputStream> loader) {
-        InputStream stream = loader.apply(name);
-        return Optional.ofNullable(stream);
-    }
-
 }
@@ -0,0 +1,305 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.delegate.DelegateExecution;
+import org.camunda.bpm.engine.delegate.ExecutionListener;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.bpmn.parser.AbstractBpmnParseListener;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.core.model.CoreModelElement;
+import org.camunda.bpm.engine.impl.persistence.entity.ExecutionEntity;
+import org.camunda.bpm.engine.impl.persistence.entity.ProcessDefinitionEntity;
+import org.camunda.bpm.engine.impl.pvm.PvmTransition;
+import org.camunda.bpm.engine.impl.pvm.process.ActivityImpl;
+import org.camunda.bpm.engine.impl.pvm.process.ProcessDefinitionImpl;
+import org.camunda.bpm.engine.impl.pvm.process.ScopeImpl;
+import org.camunda.bpm.engine.impl.pvm.process.TransitionImpl;
+import org.camunda.bpm.engine.impl.util.xml.Element;
+import org.camunda.bpm.engine.repository.Deployment;
+import org.camunda.bpm.engine.repository.ProcessDefinition;
+import org.camunda.bpm.model.bpmn.Bpmn;
+import org.camunda.bpm.model.bpmn.BpmnModelInstance;
+import org.camunda.bpm.model.bpmn.instance.FlowElement;
+import org.camunda.bpm.model.bpmn.instance.FlowNode;
+import org.camunda.bpm.model.bpmn.instance.Process;
+import org.camunda.bpm.model.bpmn.instance.SequenceFlow;
+import org.camunda.bpm.model.bpmn.instance.SubProcess;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Collects which flow nodes and sequence flows of BPMN processes are executed, shared by all tests of a test run.
+ * <p>
+ * Hits are counted by a {@link Collector}, a parse listener {@link #install(ProcessEngineConfigurationImpl) installed}
+ * once in each engine built by the extension, which adds an {@link ExecutionListener} to all activities and
+ * transitions. Engines built elsewhere are not covered. Hits are aggregated per process definition id in concurrent
+ * counters, so parallel tests don't contend, and reported for the resource of their definition.
+ * <p>
+ * When the test run ends, the coverage of each deployed BPMN resource is written to the configured file.
+ * The {@link #DISABLED disabled} instance collects nothing.
+ */
+public final class FlowNodeCoverage implements ExtensionContext.Store.CloseableResource {
+
+    /**
+     * Doesn't collect anything.
+     */
+    public static final FlowNodeCoverage DISABLED = new FlowNodeCoverage(null);
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(FlowNodeCoverage.class);
+
+    private final Path reportFile;
+
+    /**
+     * Contents of all deployed resources by their path on the classpath.
+     */
+    private final Map<String, byte[]> resources = new ConcurrentHashMap<>();
+
+    /**
+     * Deployed process definitions with their hits, by process definition id.
+     */
+    private final Map<String, CoveredDefinition> definitions = new ConcurrentHashMap<>();
+
+    private FlowNodeCoverage(final Path reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Returns the coverage of the test run, which is written to {@code reportFile} when the run ends.
+     */
+    public static FlowNodeCoverage forReport(final ExtensionContext extensionContext, final Path reportFile) {
+        return extensionContext.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(
+                reportFile.toAbsolutePath(),
+                FlowNodeCoverage::new,
+                FlowNodeCoverage.class);
+    }
+
+    /**
+     * Adds a {@link Collector} to the configuration, which counts hits once a deployment of the engine is
+     * {@link #addDeployment(ProcessEngine, Class, Deployment, Map) added} to a coverage.
+     */
+    public static void install(final ProcessEngineConfigurationImpl configuration) {
+        if (configuration.getCustomPostBPMNParseListeners() == null) {
+            configuration.setCustomPostBPMNParseListeners(new ArrayList<>());
+        }
+        configuration.getCustomPostBPMNParseListeners().add(new Collector());
+    }
+
+    public boolean isEnabled() {
+        return reportFile != null;
+    }
+
+    /**
+     * Adds a deployment of a test of {@code testClass} to the report and collects the hits of its process
+     * definitions. Resources with an already known path are ignored.
+     *
+     * @param processEngine     the engine of the deployment, not covered unless built by the extension
+     * @param testClass         the class, relative to which the resources were resolved
+     * @param deployment        the deployment of the resources
+     * @param deployedResources the contents of the resources by their deployed name
+     */
+    public void addDeployment(final ProcessEngine processEngine,
+                              final Class<?> testClass,
+                              final Deployment deployment,
+                              final Map<String, byte[]> deployedResources) {
+        if (!isEnabled()) {
+            return;
+        }
+        deployedResources.forEach((name, content) -> resources.putIfAbsent(
+                Deployments.getResourcePath(testClass, name), content));
+        for (final ProcessDefinition definition : processEngine.getRepositoryService().createProcessDefinitionQuery()
+                .deploymentId(deployment.getId()).list()) {
+            definitions.computeIfAbsent(definition.getId(), id -> new CoveredDefinition(
+                    Deployments.getResourcePath(testClass, definition.getResourceName()), definition.getKey()));
+        }
+        final List<?> parseListeners = ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration()
+                .getCustomPostBPMNParseListeners();
+        if (parseListeners == null) {
+            return;
+        }
+        parseListeners.stream()
+                .filter(Collector.class::isInstance)
+                .map(Collector.class::cast)
+                .forEach(collector -> collector.coverage = this);
+    }
+
+    /**
+     * Counts the start of flow nodes and the take of sequence flows of added deployments.
+     */
+    private void notify(final DelegateExecution execution) {
+        if (!(execution instanceof ExecutionEntity)
+                || ExecutionListener.EVENTNAME_END.equals(execution.getEventName())) {
+            return;
+        }
+        final ExecutionEntity executionEntity = (ExecutionEntity) execution;
+        final CoreModelElement eventSource = executionEntity.getEventSource();
+        final CoveredDefinition definition = definitions.get(executionEntity.getProcessDefinitionId());
+        if (definition == null || eventSource == null || eventSource instanceof ProcessDefinitionImpl) {
+            return;
+        }
+        definition.hits.computeIfAbsent(eventSource.getId(), id -> new LongAdder()).increment();
+    }
+
+    /**
+     * Writes the report.
+     */
+    @Override
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            if (reportFile.getParent() != null) {
+                Files.createDirectories(reportFile.getParent());
+            }
+            try (BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8)) {
+                writeReport(writer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write coverage report " + reportFile, e);
+        }
+    }
+
+    void writeReport(final BufferedWriter writer) throws IOException {
+        for (final String resourceName : new TreeSet<>(resources.keySet())) {
+            if (!Deployments.isBpmnResource(resourceName)) {
+                continue;
+            }
+            final BpmnModelInstance model = Bpmn.readModelFromStream(
+                    new ByteArrayInputStream(resources.get(resourceName)));
+            writer.write(resourceName);
+            writer.newLine();
+            for (final Process process : model.getModelElementsByType(Process.class)) {
+                writeProcess(writer, resourceName, process);
+            }
+        }
+    }
+
+    private void writeProcess(final BufferedWriter writer, final String resourceName, final Process process)
+            throws IOException {
+        final Set<String> processHits = new HashSet<>();
+        for (final CoveredDefinition definition : definitions.values()) {
+            if (definition.resourceName.equals(resourceName) && definition.key.equals(process.getId())) {
+                processHits.addAll(definition.hits.keySet());
+            }
+        }
+        final List<String> flowNodes = new ArrayList<>();
+        final List<String> sequenceFlows = new ArrayList<>();
+        collectElements(process.getFlowElements(), flowNodes, sequenceFlows);
+
+        final List<String> missed = new ArrayList<>();
+        final long coveredFlowNodes = count(flowNodes, processHits, missed);
+        final long coveredSequenceFlows = count(sequenceFlows, processHits, missed);
+        final int elements = flowNodes.size() + sequenceFlows.size();
+        writer.write(String.format(Locale.ROOT, "  %s: %d/%d flow nodes, %d/%d sequence flows (%.1f%%)",
+                                   process.getId(), coveredFlowNodes, flowNodes.size(),
+                                   coveredSequenceFlows, sequenceFlows.size(),
+                                   elements == 0 ? 100.0 : 100.0 * (coveredFlowNodes + coveredSequenceFlows) / elements));
+        writer.newLine();
+        if (!missed.isEmpty()) {
+            writer.write("    not covered: " + String.join(", ", missed));
+            writer.newLine();
+        }
+    }
+
+    private static void collectElements(final Collection<FlowElement> elements,
+                                        final List<String> flowNodes,
+                                        final List<String> sequenceFlows) {
+        for (final FlowElement element : elements) {
+            if (element instanceof SequenceFlow) {
+                sequenceFlows.add(element.getId());
+            } else if (element instanceof FlowNode) {
+                flowNodes.add(element.getId());
+            }
+            if (element instanceof SubProcess) {
+                collectElements(((SubProcess) element).getFlowElements(), flowNodes, sequenceFlows);
+            }
+        }
+    }
+
+    private static long count(final List<String> ids, final Set<String> processHits, final List<String> missed) {
+        long covered = 0;
+        for (final String id : ids) {
+            if (processHits.contains(id)) {
+                covered++;
+            } else {
+                missed.add(id);
+            }
+        }
+        return covered;
+    }
+
+    /**
+     * A deployed process definition, with the hits of its flow nodes and sequence flows by their id.
+     */
+    private static final class CoveredDefinition {
+
+        private final String resourceName;
+
+        private final String key;
+
+        private final Map<String, LongAdder> hits = new ConcurrentHashMap<>();
+
+        private CoveredDefinition(final String resourceName, final String key) {
+            this.resourceName = resourceName;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Adds itself as listener to all activities and transitions of parsed processes, and forwards their events to
+     * the coverage, to which deployments of its engine were added.
+     */
+    private static final class Collector extends AbstractBpmnParseListener implements ExecutionListener {
+
+        private volatile FlowNodeCoverage coverage;
+
+        @Override
+        public void parseProcess(final Element processElement, final ProcessDefinitionEntity processDefinition) {
+            addListeners(processDefinition);
+        }
+
+        private void addListeners(final ScopeImpl scope) {
+            for (final ActivityImpl activity : scope.getActivities()) {
+                activity.addBuiltInListener(ExecutionListener.EVENTNAME_START, this);
+                for (final PvmTransition transition : activity.getOutgoingTransitions()) {
+                    ((TransitionImpl) transition).addBuiltInListener(ExecutionListener.EVENTNAME_TAKE, this);
+                }
+                addListeners(activity);
+            }
+        }
+
+        @Override
+        public void notify(final DelegateExecution execution) {
+            final FlowNodeCoverage current = coverage;
+            if (current != null) {
+                current.notify(execution);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,223 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import java.util.stream.*;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Measures the phases of the extension's lifecycle per test, shared by all tests of a test run.
+ * <p>
+ * When the test run ends, a report listing the slowest tests and the slowest phases is written to the configured
+ * file. The {@link #DISABLED disabled} instance only runs the phases.
+ */
+public final class PhaseTimings implements ExtensionContext.Store.CloseableResource {
+
+    /**
+     * Doesn't measure anything.
+     */
+    public static final PhaseTimings DISABLED = new PhaseTimings(null);
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(PhaseTimings.class);
+
+    private static final int SLOWEST_TESTS = 20;
+
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    /**
+     * The measured phases.
+     */
+    public enum Phase {
+        LEASE_ENGINE("engine lease"),
+        RESOLVE_RESOURCES("resource resolution"),
+        DEPLOY("deploy"),
+        UNREGISTER_PROCESS_APPLICATION("process application unregistration"),
+        DELETE_DEPLOYMENT("deployment deletion"),
+        ASSERT_CLEAN_DB("clean database assertion"),
+        RESET_ID_GENERATOR("id generator reset"),
+        RESET_ENGINE("engine reset");
+
+        private final String description;
+
+        Phase(final String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private final Path reportFile;
+
+    private final Map<String, TestTimings> tests = new ConcurrentHashMap<>();
+
+    private PhaseTimings(final Path reportFile) {
+        this.reportFile = reportFile;
+    }
+
+    /**
+     * Returns the timings of the test run, which are written to {@code reportFile} when the run ends.
+     */
+    public static PhaseTimings forReport(final ExtensionContext extensionContext, final Path reportFile) {
+        return extensionContext.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(
+                reportFile.toAbsolutePath(),
+                PhaseTimings::new,
+                PhaseTimings.class);
+    }
+
+    /**
+     * Runs {@code action} and adds its duration to {@code phase} of the test or class of {@code extensionContext}.
+     */
+    public <T> T time(final ExtensionContext extensionContext, final Phase phase, final Supplier<T> action) {
+        if (reportFile == null) {
+            return action.get();
+        }
+        final long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            record(extensionContext, phase, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Runs {@code action} and adds its duration to {@code phase} of the test or class of {@code extensionContext}.
+     */
+    public void run(final ExtensionContext extensionContext, final Phase phase, final Runnable action) {
+        time(extensionContext, phase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private void record(final ExtensionContext extensionContext, final Phase phase, final long nanos) {
+        tests.computeIfAbsent(extensionContext.getUniqueId(), id -> new TestTimings(name(extensionContext)))
+                .add(phase, nanos);
+    }
+
+    private static String name(final ExtensionContext extensionContext) {
+        final String className = extensionContext.getRequiredTestClass().getName();
+        if (extensionContext.getTestMethod().isPresent()) {
+            return className + "#" + extensionContext.getDisplayName();
+        }
+        return className;
+    }
+
+    /**
+     * Writes the report.
+     */
+    @Override
+    public void close() {
+        if (reportFile == null) {
+            return;
+        }
+        try {
+            if (reportFile.getParent() != null) {
+                Files.createDirectories(reportFile.getParent());
+            }
+            Files.write(reportFile, report(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write timing report " + reportFile, e);
+        }
+    }
+
+    List<String> report() {
+        final List<String> lines = new ArrayList<>();
+        final List<TestTimings> slowestTests = tests.values().stream()
+                .sorted(Comparator.comparingLong(TestTimings::total).reversed())
+                .collect(Collectors.toList());
+
+        lines.add(String.format(Locale.ROOT, "Slowest tests (%d of %d)", Math.min(SLOWEST_TESTS, slowestTests.size()),
+                                slowestTests.size()));
+        for (final TestTimings test : slowestTests.subList(0, Math.min(SLOWEST_TESTS, slowestTests.size()))) {
+            final String phases = Stream.of(Phase.values())
+                    .filter(phase -> test.get(phase) > 0)
+                    .sorted(Comparator.comparingLong(test::get).reversed())
+                    .map(phase -> String.format(Locale.ROOT, "%s %.1f ms", phase, millis(test.get(phase))))
+                    .collect(Collectors.joining(", "));
+            lines.add(String.format(Locale.ROOT, "%10.1f ms  %s  [%s]", millis(test.total()), test.name, phases));
+        }
+
+        lines.add("");
+        lines.add("Slowest phases");
+        lines.add(String.format(Locale.ROOT, "%12s  %6s  %10s  %10s  %s", "total", "count", "mean", "max", "phase"));
+        Stream.of(Phase.values())
+                .filter(phase -> total(phase) > 0)
+                .sorted(Comparator.comparingLong((Phase phase) -> total(phase)).reversed())
+                .forEach(phase -> {
+                    final LongSummaryStatistics statistics = tests.values().stream()
+                            .mapToLong(test -> test.get(phase))
+                            .filter(nanos -> nanos > 0)
+                            .summaryStatistics();
+                    lines.add(String.format(Locale.ROOT, "%9.1f ms  %6d  %7.1f ms  %7.1f ms  %s",
+                                            millis(statistics.getSum()), statistics.getCount(),
+                                            millis((long) statistics.getAverage()), millis(statistics.getMax()),
+                                            phase));
+                });
+        return lines;
+    }
+
+    private long total(final Phase phase) {
+        return tests.values().stream().mapToLong(test -> test.get(phase)).sum();
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Durations of all phases of one test, in nanoseconds.
+     */
+    private static final class TestTimings {
+
+        private final String name;
+
+        private final AtomicLongArray nanos = new AtomicLongArray(Phase.values().length);
+
+        private TestTimings(final String name) {
+            this.name = name;
+        }
+
+        private void add(final Phase phase, final long duration) {
+            nanos.addAndGet(phase.ordinal(), duration);
+        }
+
+        private long get(final Phase phase) {
+            return nanos.get(phase.ordinal());
+        }
+
+        private long total() {
+            long total = 0;
+            for (int i = 0; i < nanos.length(); i++) {
+                total += nanos.get(i);
+            }
+            return total;
+        }
+    }
+
+}
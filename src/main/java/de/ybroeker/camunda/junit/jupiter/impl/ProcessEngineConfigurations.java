@@ -0,0 +1,215 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.ProcessEngineException;
+
+/**
+ * Parses each configuration resource only once and hands out copies of the parsed configuration.
+ * <p>
+ * A copy is a new instance of the configuration class, on which all properties set by the configuration resource
+ * are copied from the parsed template. Properties still holding the default of the configuration class are not
+ * touched. Only values and collections of values are copied: if the resource configures any other object (e.g. a
+ * plugin or a job executor), engines must not share it, so the resource is parsed again for each configuration.
+ */
+public final class ProcessEngineConfigurations {
+
+    /**
+     * Limits the depth up to which objects created by the configuration class are compared with a fresh default.
+     */
+    private static final int MAX_COMPARED_DEPTH = 3;
+
+    /**
+     * Parsed templates by resource, empty if the resource configures objects which cannot be copied.
+     */
+    private static final Map<String, Optional<ProcessEngineConfiguration>> TEMPLATES = new ConcurrentHashMap<>();
+
+    private ProcessEngineConfigurations() {
+        throw new AssertionError("No ProcessEngineConfigurations instances for you!");
+    }
+
+    /**
+     * Returns a new, not yet built configuration as defined in {@code configurationResource}.
+     *
+     * @param configurationResource the name of the configuration resource
+     * @return the configuration
+     */
+    public static ProcessEngineConfiguration fromResource(final String configurationResource) {
+        return TEMPLATES.computeIfAbsent(configurationResource, ProcessEngineConfigurations::parseTemplate)
+                .map(ProcessEngineConfigurations::copy)
+                .orElseGet(() -> ProcessEngineConfiguration
+                        .createProcessEngineConfigurationFromResource(configurationResource));
+    }
+
+    private static Optional<ProcessEngineConfiguration> parseTemplate(final String configurationResource) {
+        final ProcessEngineConfiguration template =
+                ProcessEngineConfiguration.createProcessEngineConfigurationFromResource(configurationResource);
+        return isCopyable(template) ? Optional.of(template) : Optional.empty();
+    }
+
+    /**
+     * Returns if all properties configured in the template are values or collections of values.
+     */
+    private static boolean isCopyable(final ProcessEngineConfiguration template) {
+        try {
+            final ProcessEngineConfiguration defaults = newInstance(template.getClass());
+            for (final Field field : getFields(template.getClass())) {
+                final Object value = field.get(template);
+                if (isConfigured(value, field.get(defaults)) && value != null
+                        && !isValue(value) && !isValueCollection(value)) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static ProcessEngineConfiguration copy(final ProcessEngineConfiguration template) {
+        try {
+            final ProcessEngineConfiguration copy = newInstance(template.getClass());
+            final ProcessEngineConfiguration defaults = newInstance(template.getClass());
+
+            for (final Field field : getFields(template.getClass())) {
+                final Object value = field.get(template);
+                if (isConfigured(value, field.get(defaults))) {
+                    field.set(copy, copyValue(value));
+                }
+            }
+            return copy;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new ProcessEngineException("Could not copy configuration " + template.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Returns the accessible, non-static and non-final fields of the type and its super classes.
+     */
+    private static List<Field> getFields(final Class<?> type) {
+        final List<Field> fields = new ArrayList<>();
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            for (final Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    private static ProcessEngineConfiguration newInstance(final Class<? extends ProcessEngineConfiguration> type)
+            throws ReflectiveOperationException {
+        return type.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * A value is considered as configured, if it differs from the default. Other objects are considered as
+     * configured, unless they are in the same state as the object created by the configuration class itself.
+     */
+    private static boolean isConfigured(final Object value, final Object defaultValue)
+            throws ReflectiveOperationException {
+        if (value == defaultValue) {
+            return false;
+        }
+        if (value == null || defaultValue == null) {
+            return true;
+        }
+        return !hasSameState(value, defaultValue, MAX_COMPARED_DEPTH);
+    }
+
+    /**
+     * Compares values and collections by {@code equals}, other objects field by field. Objects of the JDK other than
+     * values and collections, and objects nested deeper than {@code depth} are never considered the same.
+     */
+    private static boolean hasSameState(final Object value, final Object other, final int depth)
+            throws ReflectiveOperationException {
+        if (value == other) {
+            return true;
+        }
+        if (value == null || other == null || value.getClass() != other.getClass()) {
+            return false;
+        }
+        if (isValue(value) || isCollection(value)) {
+            return value.equals(other);
+        }
+        if (depth == 0 || value.getClass().getName().startsWith("java.")) {
+            return false;
+        }
+        for (final Field field : getFields(value.getClass())) {
+            if (!hasSameState(field.get(value), field.get(other), depth - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isValue(final Object value) {
+        return value instanceof String
+               || value instanceof Number
+               || value instanceof Boolean
+               || value instanceof Character
+               || value instanceof Enum;
+    }
+
+    /**
+     * Only collections of {@code java.util} are copied, others (e.g. the proxy map for spring beans) are not.
+     */
+    private static boolean isCollection(final Object value) {
+        return (value instanceof Collection || value instanceof Map)
+               && value.getClass().getName().startsWith("java.util.");
+    }
+
+    private static boolean isValueCollection(final Object value) {
+        if (!isCollection(value)) {
+            return false;
+        }
+        final Collection<?> elements = value instanceof Map ? entries((Map<?, ?>) value) : (Collection<?>) value;
+        return elements.stream().allMatch(element -> element == null || isValue(element));
+    }
+
+    private static Collection<?> entries(final Map<?, ?> map) {
+        final List<Object> entries = new ArrayList<>(map.keySet());
+        entries.addAll(map.values());
+        return entries;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object copyValue(final Object value) {
+        if (!isCollection(value)) {
+            return value;
+        }
+        if (value instanceof List) {
+            return new ArrayList<>((List) value);
+        }
+        if (value instanceof Set) {
+            return new LinkedHashSet<>((Set) value);
+        }
+        if (value instanceof Map) {
+            return new LinkedHashMap<>((Map) value);
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Creates ProcessEngines from a configuration resource, each with its own anonymous in-memory database.
+ * The configuration resource is only parsed once, see {@link ProcessEngineConfigurations}.
+ * Engines can also be created from programmatic configurations, identified by a key instead of a resource.
+ * <p>
+ * If enabled, the schema is only created by the first engine of each configuration resource in the JVM.
+ * All further databases are initialized from a {@link SchemaTemplate} of that first database.
+ * <p>
+ * The first engine of a configuration resource can be {@link #warmUp(String, boolean, String) built in the background},
+ * so its bootstrap overlaps with test discovery. It is only taken by a factory with the same schema template and
+ * history level options. Engines warmed up, but never taken, are closed when the test run ends,
+ * see {@link #closeWarmUpsWithRoot(ExtensionContext)}.
+ * <p>
+ * All engines can execute jobs inline, see {@link SynchronousJobExecution}, and collect {@link FlowNodeCoverage}.
+ */
+public final class ProcessEngineFactory implements Supplier<ProcessEngine> {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(ProcessEngineFactory.class);
+
+    private static final Map<String, SchemaTemplate> SCHEMA_TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * Keys of started warm-ups, see {@link #warmUpKey(String, boolean, String)}.
+     */
+    private static final Set<List<Object>> WARM_UP_STARTED = ConcurrentHashMap.newKeySet();
+
+    private static final Map<List<Object>, CompletableFuture<ProcessEngine>> WARM_UPS = new ConcurrentHashMap<>();
+
+    private static final Executor WARM_UP_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "camunda-junit-warm-up");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String configurationKey;
+
+    private final Supplier<? extends ProcessEngineConfiguration> configurations;
+
+    private final boolean schemaTemplateEnabled;
+
+    private final String historyLevel;
+
+    public ProcessEngineFactory(final String configurationResource, final boolean schemaTemplateEnabled) {
+        this(configurationResource, schemaTemplateEnabled, null);
+    }
+
+    /**
+     * @param historyLevel the history level of all engines, {@code null} for the level of the configuration resource
+     */
+    public ProcessEngineFactory(final String configurationResource,
+                                final boolean schemaTemplateEnabled,
+                                final String historyLevel) {
+        this(configurationResource, () -> ProcessEngineConfigurations.fromResource(configurationResource),
+             schemaTemplateEnabled, historyLevel);
+    }
+
+    /**
+     * @param configurationKey identifies the configurations, used instead of the resource for templates and warm-up
+     * @param configurations   creates a new configuration for each engine
+     * @param historyLevel     the history level of all engines, {@code null} for the level of the configurations
+     */
+    public ProcessEngineFactory(final String configurationKey,
+                                final Supplier<? extends ProcessEngineConfiguration> configurations,
+                                final boolean schemaTemplateEnabled,
+                                final String historyLevel) {
+        this.configurationKey = configurationKey;
+        this.configurations = configurations;
+        this.schemaTemplateEnabled = schemaTemplateEnabled;
+        this.historyLevel = historyLevel;
+    }
+
+    /**
+     * Starts building the first engine of {@code configurationResource} in the background.
+     * The engine is taken by the next call of {@link #get()} of a factory for that resource with the same options,
+     * which blocks until it is built. Does nothing if an engine with these options was already built or warmed up.
+     *
+     * @param historyLevel the history level of the engine, {@code null} for the level of the configuration resource
+     */
+    public static void warmUp(final String configurationResource,
+                              final boolean schemaTemplateEnabled,
+                              final String historyLevel) {
+        warmUp(configurationResource, () -> ProcessEngineConfigurations.fromResource(configurationResource),
+               schemaTemplateEnabled, historyLevel);
+    }
+
+    /**
+     * Starts building the first engine of the programmatic {@code configurations} in the background,
+     * like {@link #warmUp(String, boolean, String)}.
+     */
+    public static void warmUp(final String configurationKey,
+                              final Supplier<? extends ProcessEngineConfiguration> configurations,
+                              final boolean schemaTemplateEnabled,
+                              final String historyLevel) {
+        final List<Object> warmUpKey = warmUpKey(configurationKey, schemaTemplateEnabled, historyLevel);
+        if (schemaTemplateEnabled && SCHEMA_TEMPLATES.containsKey(templateKey(configurationKey, historyLevel))
+                || !WARM_UP_STARTED.add(warmUpKey)) {
+            return;
+        }
+        final ProcessEngineFactory factory = new ProcessEngineFactory(configurationKey, configurations,
+                                                                      schemaTemplateEnabled, historyLevel);
+        WARM_UPS.put(warmUpKey, CompletableFuture.supplyAsync(factory::build, WARM_UP_EXECUTOR));
+    }
+
+    /**
+     * Closes all engines, which were warmed up but not taken, when the root store of {@code extensionContext} is
+     * closed at the end of the test run, e.g. if all tests require their own history level.
+     */
+    public static void closeWarmUpsWithRoot(final ExtensionContext extensionContext) {
+        extensionContext.getRoot().getStore(NAMESPACE)
+                .getOrComputeIfAbsent(WarmUpCleanup.class, key -> new WarmUpCleanup(), WarmUpCleanup.class);
+    }
+
+    /**
+     * Closes the engines of {@code configurationKey}, which were warmed up but not taken, waits until they are built.
+     */
+    public static void closeWarmUp(final String configurationKey) {
+        new ArrayList<>(WARM_UPS.keySet()).stream()
+                .filter(warmUpKey -> warmUpKey.get(0).equals(configurationKey))
+                .forEach(ProcessEngineFactory::closeWarmUp);
+    }
+
+    private static void closeWarmUp(final List<Object> warmUpKey) {
+        final CompletableFuture<ProcessEngine> warmUp = WARM_UPS.remove(warmUpKey);
+        if (warmUp != null) {
+            //failed warm-ups have nothing to close
+            warmUp.handle((processEngine, failure) -> {
+                if (processEngine != null) {
+                    processEngine.close();
+                }
+                return null;
+            }).join();
+        }
+    }
+
+    @Override
+    public ProcessEngine get() {
+        final CompletableFuture<ProcessEngine> warmUp = WARM_UPS.remove(
+                warmUpKey(configurationKey, schemaTemplateEnabled, historyLevel));
+        if (warmUp != null) {
+            return await(warmUp);
+        }
+        return build();
+    }
+
+    private ProcessEngine build() {
+        final ProcessEngineConfiguration configuration = configurations.get()
+                .setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID());//anonymous DB for each engine
+        if (historyLevel != null) {
+            configuration.setHistory(historyLevel);
+        }
+        if (configuration instanceof ProcessEngineConfigurationImpl) {
+            SynchronousJobExecution.install((ProcessEngineConfigurationImpl) configuration);
+            FlowNodeCoverage.install((ProcessEngineConfigurationImpl) configuration);
+        }
+
+        if (!schemaTemplateEnabled) {
+            return configuration.buildProcessEngine();
+        }
+
+        final String templateKey = templateKey(configurationKey, historyLevel);
+        final SchemaTemplate schemaTemplate = SCHEMA_TEMPLATES.get(templateKey);
+        if (schemaTemplate == null) {
+            final ProcessEngine processEngine = configuration.buildProcessEngine();
+            SCHEMA_TEMPLATES.putIfAbsent(templateKey, SchemaTemplate.create(
+                    ((ProcessEngineConfigurationImpl) configuration).getDataSource()));
+            return processEngine;
+        }
+
+        final Connection connection = schemaTemplate.initialize(configuration);
+        try {
+            return configuration
+                    .setDatabaseSchemaUpdate(ProcessEngineConfiguration.DB_SCHEMA_UPDATE_FALSE)
+                    .buildProcessEngine();
+        } finally {
+            close(connection);
+        }
+    }
+
+    /**
+     * The schema depends on the history level.
+     */
+    private static String templateKey(final String configurationKey, final String historyLevel) {
+        return historyLevel == null ? configurationKey : configurationKey + "?history=" + historyLevel;
+    }
+
+    private static List<Object> warmUpKey(final String configurationKey,
+                                          final boolean schemaTemplateEnabled,
+                                          final String historyLevel) {
+        return Arrays.asList(configurationKey, schemaTemplateEnabled, historyLevel);
+    }
+
+    private static ProcessEngine await(final CompletableFuture<ProcessEngine> warmUp) {
+        try {
+            return warmUp.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ProcessEngineException("Could not build process engine", e.getCause());
+        }
+    }
+
+    private static final class WarmUpCleanup implements ExtensionContext.Store.CloseableResource {
+
+        @Override
+        public void close() {
+            new ArrayList<>(WARM_UPS.keySet()).forEach(ProcessEngineFactory::closeWarmUp);
+        }
+    }
+
+    private static void close(final Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new ProcessEngineException("Could not close template connection", e);
+        }
+    }
+
+}
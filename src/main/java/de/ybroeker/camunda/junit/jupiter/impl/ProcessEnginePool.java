@@ -0,0 +1,454 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.test.TestHelper;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+/**
+ * Suite-wide pool of ProcessEngines, stored in the root-context and closed at the end of the test-run.
+ * <p>
+ * Each engine is {@link #lease() leased} exclusively to one test at a time and returned afterwards,
+ * so the number of created engines is bounded by the number of concurrently running tests.
+ * Pools of {@link #forProcessEngine(ExtensionContext, ProcessEngine) external engines} share their engine
+ * between all tests and never close it. Shared pools create a single engine, which is leased to all tests
+ * concurrently, e.g. to tests isolated by tenants.
+ */
+public final class ProcessEnginePool implements ExtensionContext.Store.CloseableResource {
+
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(ProcessEnginePool.class);
+
+    private final Supplier<ProcessEngine> processEngineFactory;
+
+    private final boolean managed;
+
+    /**
+     * If each engine is leased to one test at a time.
+     */
+    private final boolean exclusive;
+
+    private final Deque<ProcessEngine> idleProcessEngines = new ArrayDeque<>();
+
+    private final Map<ProcessEngine, PooledProcessEngine> processEngines = new IdentityHashMap<>();
+
+    private ProcessEnginePool(final Supplier<ProcessEngine> processEngineFactory,
+                              final boolean managed,
+                              final boolean exclusive) {
+        this.processEngineFactory = processEngineFactory;
+        this.managed = managed;
+        this.exclusive = exclusive;
+    }
+
+    /**
+     * Returns the pool for engines created with the given options. Pools are shared by all users of the same
+     * configuration key, each history level has its own pool, and exclusive and shared pools are distinct.
+     */
+    public static ProcessEnginePool forConfiguration(final ExtensionContext extensionContext, final Options options) {
+        final String levelKey = options.historyLevel == null
+                ? options.configurationKey
+                : options.configurationKey + "?history=" + options.historyLevel;
+        final String key = options.shared ? levelKey + "?shared" : levelKey;
+        return extensionContext.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(
+                key,
+                ignored -> create(options),
+                ProcessEnginePool.class);
+    }
+
+    /**
+     * Returns a new pool for engines created with the given options, which is not shared. It must be
+     * {@link #close() closed} by the caller, e.g. a benchmark using the engines outside of a test run.
+     */
+    public static ProcessEnginePool create(final Options options) {
+        return new ProcessEnginePool(
+                new ProcessEngineFactory(options.configurationKey, options.configurations,
+                                         options.schemaTemplateEnabled, options.historyLevel),
+                true, !options.shared);
+    }
+
+    /**
+     * Returns the pool sharing the given, externally managed {@code processEngine}.
+     */
+    public static ProcessEnginePool forProcessEngine(final ExtensionContext extensionContext,
+                                                     final ProcessEngine processEngine) {
+        return extensionContext.getRoot().getStore(NAMESPACE).getOrComputeIfAbsent(
+                processEngine,
+                engine -> new ProcessEnginePool(() -> engine, false, false),
+                ProcessEnginePool.class);
+    }
+
+    /**
+     * Leases an idle engine, or creates a new one if none is idle.
+     *
+     * @return the lease, which returns the engine to the pool when closed
+     */
+    public Lease lease() {
+        if (!exclusive) {
+            return leaseShared();
+        }
+        synchronized (this) {
+            final ProcessEngine idle = idleProcessEngines.pollFirst();
+            if (idle != null) {
+                return new Lease(idle);
+            }
+        }
+
+        //create outside of the lock, engine bootstrap is expensive
+        final ProcessEngine processEngine = processEngineFactory.get();
+        final PooledProcessEngine pooledProcessEngine = new PooledProcessEngine(processEngine, true);
+        synchronized (this) {
+            processEngines.putIfAbsent(processEngine, pooledProcessEngine);
+        }
+        return new Lease(processEngine);
+    }
+
+    /**
+     * Leases the single engine of the pool, concurrent tests wait for its creation instead of creating their own.
+     */
+    private synchronized Lease leaseShared() {
+        if (processEngines.isEmpty()) {
+            final ProcessEngine processEngine = processEngineFactory.get();
+            processEngines.put(processEngine, new PooledProcessEngine(processEngine, false));
+        }
+        return new Lease(processEngines.keySet().iterator().next());
+    }
+
+    private synchronized void release(final ProcessEngine processEngine) {
+        if (exclusive && processEngines.containsKey(processEngine)) {
+            idleProcessEngines.addFirst(processEngine);
+        }
+    }
+
+    private void discard(final ProcessEngine processEngine) {
+        //engines used by other tests stay open
+        if (!exclusive) {
+            return;
+        }
+        synchronized (this) {
+            processEngines.remove(processEngine);
+        }
+        processEngine.close();
+    }
+
+    private synchronized PooledProcessEngine getPooledProcessEngine(final ProcessEngine processEngine) {
+        return processEngines.get(processEngine);
+    }
+
+    /**
+     * Closes all engines created by this pool, external engines are only cleared from cached deployments.
+     */
+    @Override
+    public void close() {
+        final List<ProcessEngine> engines;
+        synchronized (this) {
+            engines = new ArrayList<>(processEngines.keySet());
+            if (!managed) {
+                processEngines.values().forEach(pooled -> pooled.deploymentCache.clear());
+            }
+            processEngines.clear();
+            idleProcessEngines.clear();
+        }
+        if (managed) {
+            engines.forEach(ProcessEngine::close);
+        }
+    }
+
+    /**
+     * Options of a pool of engines, which are created from a configuration resource or programmatic configurations.
+     * By default new databases are initialized from a {@link SchemaTemplate}, engines use the history level of their
+     * configuration and are leased exclusively.
+     */
+    public static final class Options {
+
+        private final String configurationKey;
+
+        private final Supplier<? extends ProcessEngineConfiguration> configurations;
+
+        private boolean schemaTemplateEnabled = true;
+
+        private String historyLevel;
+
+        private boolean shared;
+
+        private Options(final String configurationKey,
+                        final Supplier<? extends ProcessEngineConfiguration> configurations) {
+            this.configurationKey = Objects.requireNonNull(configurationKey, "configurationKey");
+            this.configurations = Objects.requireNonNull(configurations, "configurations");
+        }
+
+        /**
+         * Returns options for engines created from {@code configurationResource}.
+         */
+        public static Options configurationResource(final String configurationResource) {
+            return new Options(configurationResource,
+                               () -> ProcessEngineConfigurations.fromResource(configurationResource));
+        }
+
+        /**
+         * Returns options for engines created from programmatic {@code configurations}.
+         *
+         * @param configurationKey identifies the configurations, pools are shared by all users of the same key
+         * @param configurations   creates a new configuration for each engine
+         */
+        public static Options configurations(final String configurationKey,
+                                             final Supplier<? extends ProcessEngineConfiguration> configurations) {
+            return new Options(configurationKey, configurations);
+        }
+
+        /**
+         * @param schemaTemplateEnabled if new databases are initialized from a {@link SchemaTemplate}
+         */
+        public Options schemaTemplateEnabled(final boolean schemaTemplateEnabled) {
+            this.schemaTemplateEnabled = schemaTemplateEnabled;
+            return this;
+        }
+
+        /**
+         * @param historyLevel the history level, {@code null} for the level of the configuration
+         */
+        public Options historyLevel(final String historyLevel) {
+            this.historyLevel = historyLevel;
+            return this;
+        }
+
+        /**
+         * @param shared if the pool's single engine is leased to all tests concurrently
+         */
+        public Options shared(final boolean shared) {
+            this.shared = shared;
+            return this;
+        }
+    }
+
+    /**
+     * An engine of the pool, with its caches.
+     */
+    private static final class PooledProcessEngine {
+
+        private final DeploymentCache deploymentCache;
+
+        /**
+         * Installed on first use, so engines only count statements for tests which need it.
+         */
+        private SqlStatementCounter sqlStatementCounter;
+
+        /**
+         * Installed on first use, so only engines leased exclusively by the extension are modified.
+         */
+        private CreatedEntityTracker createdEntityTracker;
+
+        private final boolean databaseSnapshotSupported;
+
+        /**
+         * Taken on demand by the first test which needs it, so engines only pay for it if they are reset.
+         * {@code null} if not taken yet or not supported.
+         */
+        private DatabaseSnapshot databaseSnapshot;
+
+        /**
+         * @param exclusive if the engine is leased to one test at a time, only those support database snapshots
+         */
+        private PooledProcessEngine(final ProcessEngine processEngine, final boolean exclusive) {
+            this.deploymentCache = new DeploymentCache(processEngine);
+            this.databaseSnapshotSupported = exclusive && DatabaseSnapshot.isSupported(
+                    ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration().getJdbcUrl());
+        }
+    }
+
+    /**
+     * An engine leased to one test. Closing the lease returns the engine to its pool.
+     */
+    public final class Lease implements ExtensionContext.Store.CloseableResource {
+
+        private final ProcessEngine processEngine;
+
+        private boolean returned;
+
+        private Lease(final ProcessEngine processEngine) {
+            this.processEngine = processEngine;
+        }
+
+        /**
+         * @throws IllegalStateException if the engine was already returned or discarded, like all other getters
+         */
+        public ProcessEngine getProcessEngine() {
+            checkNotReturned();
+            return processEngine;
+        }
+
+        public DeploymentCache getDeploymentCache() {
+            return getLeasedProcessEngine().deploymentCache;
+        }
+
+        /**
+         * Returns the statement counter of the engine, installs it on first use.
+         *
+         * @throws IllegalStateException if the engine is not {@link #isExclusive() leased exclusively}, its statements
+         *                               can't be attributed to one test and external engines are never modified
+         */
+        public SqlStatementCounter getSqlStatementCounter() {
+            if (!exclusive) {
+                throw new IllegalStateException("SQL statements are only counted on exclusively leased engines");
+            }
+            final PooledProcessEngine pooledProcessEngine = getLeasedProcessEngine();
+            synchronized (pooledProcessEngine) {
+                if (pooledProcessEngine.sqlStatementCounter == null) {
+                    pooledProcessEngine.sqlStatementCounter = SqlStatementCounter.install(
+                            ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration());
+                }
+                return pooledProcessEngine.sqlStatementCounter;
+            }
+        }
+
+        /**
+         * Returns the tracker of the entities created on the engine, installs it on first use.
+         *
+         * @throws IllegalStateException if the engine is not {@link #isExclusive() leased exclusively}, its entities
+         *                               can't be attributed to one test and external engines are never modified
+         */
+        public CreatedEntityTracker getCreatedEntityTracker() {
+            if (!exclusive) {
+                throw new IllegalStateException("Created entities are only tracked on exclusively leased engines");
+            }
+            final PooledProcessEngine pooledProcessEngine = getLeasedProcessEngine();
+            synchronized (pooledProcessEngine) {
+                if (pooledProcessEngine.createdEntityTracker == null) {
+                    pooledProcessEngine.createdEntityTracker = CreatedEntityTracker.install(
+                            ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration());
+                }
+                return pooledProcessEngine.createdEntityTracker;
+            }
+        }
+
+        private synchronized void checkNotReturned() {
+            if (returned) {
+                throw new IllegalStateException("The process engine was already returned to its pool or discarded");
+            }
+        }
+
+        private PooledProcessEngine getLeasedProcessEngine() {
+            checkNotReturned();
+            return getPooledProcessEngine(processEngine);
+        }
+
+        /**
+         * Returns if the engine is leased to one test at a time, external engines and engines of shared pools
+         * are used by all tests.
+         */
+        public boolean isExclusive() {
+            return exclusive;
+        }
+
+        /**
+         * Returns if the database of the engine supports snapshots, but none was {@link #takeDatabaseSnapshot() taken}
+         * yet.
+         */
+        public boolean isDatabaseSnapshotMissing() {
+            final PooledProcessEngine pooledProcessEngine = getLeasedProcessEngine();
+            synchronized (pooledProcessEngine) {
+                return pooledProcessEngine.databaseSnapshotSupported && pooledProcessEngine.databaseSnapshot == null;
+            }
+        }
+
+        /**
+         * Takes the snapshot of the database, which is restored by {@link #reset()}, unless it was taken before or
+         * is not supported. Must be called before the test changes the database. Cached deployments are deleted
+         * first, so the snapshot holds no deployments and the cache stays consistent with the restored database.
+         */
+        public void takeDatabaseSnapshot() {
+            final PooledProcessEngine pooledProcessEngine = getLeasedProcessEngine();
+            synchronized (pooledProcessEngine) {
+                if (pooledProcessEngine.databaseSnapshotSupported && pooledProcessEngine.databaseSnapshot == null) {
+                    pooledProcessEngine.deploymentCache.clear();
+                    pooledProcessEngine.databaseSnapshot = DatabaseSnapshot.create(
+                            ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration().getDataSource());
+                }
+            }
+        }
+
+        /**
+         * Resets the engine to the state of its {@link #takeDatabaseSnapshot() database snapshot}, by restoring the
+         * snapshot and purging all caches. Engines without snapshot are {@link #discard() discarded} instead, as are
+         * engines whose snapshot could not be restored.
+         */
+        public synchronized void reset() {
+            final PooledProcessEngine pooledProcessEngine = getLeasedProcessEngine();
+            final DatabaseSnapshot databaseSnapshot;
+            if (pooledProcessEngine == null) {
+                databaseSnapshot = null;
+            } else {
+                synchronized (pooledProcessEngine) {
+                    databaseSnapshot = pooledProcessEngine.databaseSnapshot;
+                }
+            }
+            if (databaseSnapshot == null) {
+                discard();
+                return;
+            }
+            final ProcessEngineConfigurationImpl configuration =
+                    ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration();
+
+            try {
+                databaseSnapshot.restore(configuration.getDataSource());
+            } catch (RuntimeException e) {
+                //the database is partially restored at best
+                discard();
+                throw e;
+            }
+            //the snapshot holds no cached deployments
+            pooledProcessEngine.deploymentCache.invalidate();
+            synchronized (pooledProcessEngine) {
+                if (pooledProcessEngine.createdEntityTracker != null) {
+                    pooledProcessEngine.createdEntityTracker.drain();
+                }
+            }
+            configuration.getDeploymentCache().purgeCache();
+            TestHelper.resetIdGenerator(configuration);
+        }
+
+        /**
+         * Closes the engine instead of returning it to the pool.
+         */
+        public synchronized void discard() {
+            if (!returned) {
+                returned = true;
+                ProcessEnginePool.this.discard(processEngine);
+            }
+        }
+
+        /**
+         * Returns if the engine was returned to the pool or discarded.
+         */
+        public synchronized boolean isReturned() {
+            return returned;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!returned) {
+                returned = true;
+                release(processEngine);
+            }
+        }
+    }
+
+}
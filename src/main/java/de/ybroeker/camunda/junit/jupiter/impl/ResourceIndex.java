@@ -0,0 +1,164 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.camunda.bpm.engine.impl.util.IoUtil;
+
+/**
+ * Resources of a test class, resolved once per class and cached with their content.
+ * <p>
+ * The names of all resources in the package of the test class are indexed on first use, so probing for
+ * conventional resource names (e.g. {@code TestClass.method.bpmn}) doesn't touch the classpath.
+ * Packages, which can't be listed, are probed with {@link Class#getResource(String)} instead.
+ */
+final class ResourceIndex {
+
+    private static final ClassValue<ResourceIndex> INDEXES = new ClassValue<ResourceIndex>() {
+        @Override
+        protected ResourceIndex computeValue(final Class<?> type) {
+            return new ResourceIndex(type);
+        }
+    };
+
+    private final Class<?> testClass;
+
+    /**
+     * Names of all resources in the package of the test class, {@code null} if the package can't be listed.
+     */
+    private volatile Set<String> packageResources;
+
+    private volatile boolean indexed;
+
+    private final Map<String, Optional<byte[]>> classResources = new ConcurrentHashMap<>();
+
+    private final Map<String, Optional<byte[]>> classLoaderResources = new ConcurrentHashMap<>();
+
+    private ResourceIndex(final Class<?> testClass) {
+        this.testClass = testClass;
+    }
+
+    static ResourceIndex of(final Class<?> testClass) {
+        return INDEXES.get(testClass);
+    }
+
+    /**
+     * Resolves {@code name} relative to the test class, like {@link Class#getResourceAsStream(String)}.
+     */
+    Optional<byte[]> findClassResource(final String name) {
+        if (!name.startsWith("/") && !mayExistInPackage(name)) {
+            return Optional.empty();
+        }
+        return classResources.computeIfAbsent(name, key -> read(key, testClass::getResourceAsStream));
+    }
+
+    /**
+     * Resolves {@code name} with the class loader of the test class,
+     * like {@link ClassLoader#getResourceAsStream(String)}.
+     */
+    Optional<byte[]> findClassLoaderResource(final String name) {
+        final ClassLoader classLoader = testClass.getClassLoader();
+        return classLoaderResources.computeIfAbsent(name, key -> read(key, classLoader::getResourceAsStream));
+    }
+
+    private boolean mayExistInPackage(final String name) {
+        if (!indexed) {
+            synchronized (this) {
+                if (!indexed) {
+                    packageResources = listPackage();
+                    indexed = true;
+                }
+            }
+        }
+        final Set<String> resources = packageResources;
+        return resources == null || name.contains("/") || resources.contains(name);
+    }
+
+    private Set<String> listPackage() {
+        final String packagePath = testClass.getPackage() == null
+                ? ""
+                : testClass.getPackage().getName().replace('.', '/');
+        final Set<String> names = new HashSet<>();
+        try {
+            final Enumeration<URL> roots = testClass.getClassLoader().getResources(packagePath);
+            while (roots.hasMoreElements()) {
+                if (!listRoot(roots.nextElement(), packagePath, names)) {
+                    return null;
+                }
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return null;
+        }
+        //e.g. encapsulated packages of named modules aren't listed, even if the class can access its resources
+        final String className = testClass.getName();
+        if (!names.contains(className.substring(className.lastIndexOf('.') + 1) + ".class")) {
+            return null;
+        }
+        return names;
+    }
+
+    private static boolean listRoot(final URL root, final String packagePath, final Set<String> names)
+            throws IOException, URISyntaxException {
+        if ("file".equals(root.getProtocol())) {
+            final String[] files = new File(root.toURI()).list();
+            if (files != null) {
+                names.addAll(Arrays.asList(files));
+            }
+            return true;
+        }
+        final URLConnection connection = root.openConnection();
+        if (connection instanceof JarURLConnection) {
+            connection.setUseCaches(false);
+            final String prefix = packagePath.isEmpty() ? "" : packagePath + "/";
+            try (JarFile jarFile = ((JarURLConnection) connection).getJarFile()) {
+                final Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    final String entry = entries.nextElement().getName();
+                    if (entry.startsWith(prefix) && entry.indexOf('/', prefix.length()) < 0) {
+                        names.add(entry.substring(prefix.length()));
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static Optional<byte[]> read(final String name, final Function<String, InputStream> loader) {
+        final InputStream stream = loader.apply(name);
+        if (stream == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(IoUtil.readInputStream(stream, name));
+        } finally {
+            IoUtil.closeSilently(stream);
+        }
+    }
+
+}
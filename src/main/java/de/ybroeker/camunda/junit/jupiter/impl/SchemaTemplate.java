@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.sql.*;
+import java.util.*;
+import javax.sql.DataSource;
+
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.ProcessEngineException;
+
+/**
+ * Script of a freshly created H2-database, which creates schema and initial rows of another database
+ * without executing the DDL of the engine.
+ */
+final class SchemaTemplate {
+
+    private final List<String> statements;
+
+    private SchemaTemplate(final List<String> statements) {
+        this.statements = statements;
+    }
+
+    /**
+     * Scripts the database of {@code dataSource}, which must not be used by any test yet.
+     *
+     * @param dataSource the data source of an H2-database
+     * @return the template
+     */
+    static SchemaTemplate create(final DataSource dataSource) {
+        final List<String> statements = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SCRIPT NOPASSWORDS NOSETTINGS")) {
+            while (resultSet.next()) {
+                statements.add(resultSet.getString(1));
+            }
+        } catch (SQLException e) {
+            throw new ProcessEngineException("Could not script database", e);
+        }
+        return new SchemaTemplate(statements);
+    }
+
+    /**
+     * Initializes the database of {@code configuration} from the template.
+     * <p>
+     * In-memory databases are dropped as soon as their last connection is closed, so the returned connection
+     * must stay open until the engine has opened its own connections.
+     *
+     * @param configuration the configuration of the new engine
+     * @return an open connection to the new database
+     */
+    Connection initialize(final ProcessEngineConfiguration configuration) {
+        try {
+            final Connection connection = DriverManager.getConnection(configuration.getJdbcUrl(),
+                                                                      configuration.getJdbcUsername(),
+                                                                      configuration.getJdbcPassword());
+            try (Statement statement = connection.createStatement()) {
+                for (final String sql : statements) {
+                    statement.addBatch(sql);
+                }
+                statement.executeBatch();
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            return connection;
+        } catch (SQLException e) {
+            throw new ProcessEngineException("Could not initialize database from template", e);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.*;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+
+/**
+ * MyBatis-interceptor, which counts the statements executed by one engine while {@link #startRecording() recording}.
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                   args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class})
+})
+public final class SqlStatementCounter implements Interceptor {
+
+    private volatile SqlStatementCountsImpl recording;
+
+    private SqlStatementCounter() {
+    }
+
+    /**
+     * Adds a new counter to the SQL session factory of the engine.
+     */
+    public static SqlStatementCounter install(final ProcessEngineConfigurationImpl configuration) {
+        final SqlStatementCounter counter = new SqlStatementCounter();
+        configuration.getSqlSessionFactory().getConfiguration().addInterceptor(counter);
+        return counter;
+    }
+
+    /**
+     * Counts all following statements into new counts, until {@link #stopRecording()}.
+     */
+    public SqlStatementCountsImpl startRecording() {
+        final SqlStatementCountsImpl counts = new SqlStatementCountsImpl();
+        recording = counts;
+        return counts;
+    }
+
+    public void stopRecording() {
+        recording = null;
+    }
+
+    @Override
+    public Object intercept(final Invocation invocation) throws Throwable {
+        final SqlStatementCountsImpl counts = recording;
+        if (counts != null) {
+            final MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+            counts.record(statement.getId(), statement.getSqlCommandType());
+        }
+        return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(final Object target) {
+        return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(final Properties properties) {
+        //no properties
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.*;
+
+import de.ybroeker.camunda.junit.jupiter.QueryBudget;
+import de.ybroeker.camunda.junit.jupiter.SqlStatementCounts;
+import org.apache.ibatis.mapping.SqlCommandType;
+
+/**
+ * Thread-safe {@link SqlStatementCounts}, recorded by the {@link SqlStatementCounter} of an engine.
+ */
+public final class SqlStatementCountsImpl implements SqlStatementCounts {
+
+    /**
+     * Counts of a test which doesn't record statements.
+     */
+    public static final SqlStatementCountsImpl EMPTY = new SqlStatementCountsImpl();
+
+    private static final int LISTED_STATEMENTS = 10;
+
+    private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+
+    private final Map<String, SqlCommandType> commandTypes = new ConcurrentHashMap<>();
+
+    void record(final String statementId, final SqlCommandType commandType) {
+        counts.computeIfAbsent(statementId, id -> new LongAdder()).increment();
+        commandTypes.putIfAbsent(statementId, commandType);
+    }
+
+    private long count(final SqlCommandType commandType) {
+        return counts.entrySet().stream()
+                .filter(entry -> commandTypes.get(entry.getKey()) == commandType)
+                .mapToLong(entry -> entry.getValue().sum())
+                .sum();
+    }
+
+    @Override
+    public long getSelects() {
+        return count(SqlCommandType.SELECT);
+    }
+
+    @Override
+    public long getInserts() {
+        return count(SqlCommandType.INSERT);
+    }
+
+    @Override
+    public long getUpdates() {
+        return count(SqlCommandType.UPDATE);
+    }
+
+    @Override
+    public long getDeletes() {
+        return count(SqlCommandType.DELETE);
+    }
+
+    @Override
+    public long getTotal() {
+        return counts.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    @Override
+    public long getCount(final String statementId) {
+        final LongAdder count = counts.get(statementId);
+        return count == null ? 0 : count.sum();
+    }
+
+    @Override
+    public Map<String, Long> getCountsByStatementId() {
+        return counts.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().sum(), (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * Throws an {@link AssertionError} listing the most frequent statements, if any limit of {@code budget}
+     * is exceeded.
+     */
+    public void assertWithin(final QueryBudget budget) {
+        assertWithin("SELECT", budget.maxSelects(), getSelects(), SqlCommandType.SELECT);
+        assertWithin("INSERT", budget.maxInserts(), getInserts(), SqlCommandType.INSERT);
+        assertWithin("UPDATE", budget.maxUpdates(), getUpdates(), SqlCommandType.UPDATE);
+        assertWithin("DELETE", budget.maxDeletes(), getDeletes(), SqlCommandType.DELETE);
+        assertWithin("", budget.maxTotal(), getTotal(), null);
+    }
+
+    private void assertWithin(final String name, final int max, final long actual, final SqlCommandType commandType) {
+        if (max < 0 || actual <= max) {
+            return;
+        }
+        final String statements = counts.entrySet().stream()
+                .filter(entry -> commandType == null || commandTypes.get(entry.getKey()) == commandType)
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> entry) -> entry.getValue().sum())
+                                .reversed())
+                .limit(LISTED_STATEMENTS)
+                .map(entry -> entry.getKey() + "=" + entry.getValue().sum())
+                .collect(Collectors.joining(", "));
+        throw new AssertionError(String.format("Query budget exceeded: %d %sstatements, budget is %d [%s]",
+                                               actual, name.isEmpty() ? "" : name + " ", max, statements));
+    }
+
+}
@@ -0,0 +1,225 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import org.camunda.bpm.engine.ManagementService;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.impl.AbstractQuery;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.context.Context;
+import org.camunda.bpm.engine.impl.interceptor.Command;
+import org.camunda.bpm.engine.impl.interceptor.CommandInterceptor;
+import org.camunda.bpm.engine.impl.util.ClockUtil;
+import org.camunda.bpm.engine.runtime.Job;
+
+/**
+ * Executes jobs synchronously on the calling thread instead of a job executor.
+ * <p>
+ * Installed as command interceptor in engines built by the extension. If {@link #setInline(boolean) enabled} for the
+ * calling thread, all jobs which became executable by a service call are executed right after the call committed,
+ * until the engine reaches a wait state. Exceptions of those jobs are thrown by the service call. Queries and other
+ * {@link ReadOnlyCommand read-only commands} don't execute jobs, neither do the commands executing them.
+ */
+public final class SynchronousJobExecution extends CommandInterceptor {
+
+    /**
+     * Limits the passes of {@link #executeUntilWaitState(ManagementService)}, e.g. for jobs failing forever.
+     */
+    private static final int MAX_PASSES = 1000;
+
+    /**
+     * Limits the due dates passed by {@link #executeTimersUntil(ManagementService, Date)}.
+     */
+    private static final int MAX_DUE_DATES = 100_000;
+
+    private static final ThreadLocal<Boolean> INLINE = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private static final ThreadLocal<Boolean> EXECUTING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final ProcessEngineConfigurationImpl configuration;
+
+    private SynchronousJobExecution(final ProcessEngineConfigurationImpl configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Adds the interceptor to the configuration, must be called before the engine is built.
+     */
+    public static void install(final ProcessEngineConfigurationImpl configuration) {
+        //copied, the list may be shared with other configurations
+        final List<CommandInterceptor> interceptors = new ArrayList<>();
+        if (configuration.getCustomPreCommandInterceptorsTxRequired() != null) {
+            interceptors.addAll(configuration.getCustomPreCommandInterceptorsTxRequired());
+        }
+        interceptors.add(new SynchronousJobExecution(configuration));
+        configuration.setCustomPreCommandInterceptorsTxRequired(interceptors);
+    }
+
+    public static boolean isInstalled(final ProcessEngineConfigurationImpl configuration) {
+        final List<CommandInterceptor> interceptors = configuration.getCustomPreCommandInterceptorsTxRequired();
+        return interceptors != null && interceptors.stream().anyMatch(SynchronousJobExecution.class::isInstance);
+    }
+
+    /**
+     * Enables or disables inline job execution for the calling thread.
+     */
+    public static void setInline(final boolean inline) {
+        if (inline) {
+            INLINE.set(Boolean.TRUE);
+        } else {
+            INLINE.remove();
+        }
+    }
+
+    public static boolean isInline() {
+        return INLINE.get();
+    }
+
+    /**
+     * Executes all jobs executable now, acquired by a single query. Jobs created by them are not executed.
+     *
+     * @return the number of executed jobs
+     */
+    public static int executeAvailableJobs(final ManagementService managementService) {
+        return executing(() -> {
+            final List<Job> jobs = managementService.createJobQuery()
+                    .executable()
+                    .active()
+                    .orderByJobDuedate().asc()
+                    .list();
+            int executed = 0;
+            for (final Job job : jobs) {
+                if (execute(managementService, job.getId())) {
+                    executed++;
+                }
+            }
+            return executed;
+        });
+    }
+
+    /**
+     * Executes jobs until none is executable anymore, i.e. all process instances wait for a user, a message or a
+     * timer due in the future.
+     *
+     * @return the number of executed jobs
+     */
+    public static int executeUntilWaitState(final ManagementService managementService) {
+        return executing(() -> {
+            int executed = 0;
+            for (int pass = 0; pass < MAX_PASSES; pass++) {
+                final int executedInPass = executeAvailableJobs(managementService);
+                if (executedInPass == 0) {
+                    return executed;
+                }
+                executed += executedInPass;
+            }
+            throw new IllegalStateException("No wait state reached after " + MAX_PASSES + " passes of job execution");
+        });
+    }
+
+    /**
+     * Moves the clock forward to {@code until}, executing all timers due until then in the order of their due dates.
+     * The clock is set just past the next due date, then all jobs executable at that time are executed, e.g. the due
+     * timers, their async continuations and timers created by them. Repeated until no timer is due until
+     * {@code until}.
+     *
+     * @return the number of executed jobs
+     */
+    public static int executeTimersUntil(final ManagementService managementService, final Date until) {
+        return executing(() -> {
+            final Date end = new Date(until.getTime() + 1);
+            int executed = 0;
+            for (int dueDate = 0; dueDate < MAX_DUE_DATES; dueDate++) {
+                final List<Job> nextTimers = managementService.createJobQuery()
+                        .timers()
+                        .active()
+                        .withRetriesLeft()
+                        .duedateLowerThan(end)
+                        .orderByJobDuedate().asc()
+                        .listPage(0, 1);
+                if (nextTimers.isEmpty()) {
+                    moveClockTo(until);
+                    return executed;
+                }
+                //past the due date, like a job executor, otherwise a finished cycle would yield its last date again
+                moveClockTo(new Date(nextTimers.get(0).getDuedate().getTime() + 1));
+                executed += executeUntilWaitState(managementService);
+            }
+            throw new IllegalStateException("Timers still due after " + MAX_DUE_DATES + " due dates");
+        });
+    }
+
+    /**
+     * Runs {@code action} with inline job execution suspended for the calling thread, so neither the commands it
+     * executes nor nested job executions trigger another one.
+     */
+    private static <T> T executing(final Supplier<T> action) {
+        final boolean executing = EXECUTING.get();
+        EXECUTING.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            EXECUTING.set(executing);
+        }
+    }
+
+    private static void moveClockTo(final Date time) {
+        if (time.after(ClockUtil.getCurrentTime())) {
+            ClockUtil.setCurrentTime(time);
+        }
+    }
+
+    /**
+     * Returns {@code false} if the job was removed by a job executed before it, e.g. a canceled boundary timer.
+     */
+    private static boolean execute(final ManagementService managementService, final String jobId) {
+        try {
+            managementService.executeJob(jobId);
+            return true;
+        } catch (ProcessEngineException e) {
+            if (managementService.createJobQuery().jobId(jobId).count() == 0) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> T execute(final Command<T> command) {
+        //nested commands and the commands executing the jobs run within the outer call
+        if (!INLINE.get() || EXECUTING.get() || Context.getCommandContext() != null || isReadOnly(command)) {
+            return next.execute(command);
+        }
+        final T result = next.execute(command);
+        executeUntilWaitState(configuration.getManagementService());
+        return result;
+    }
+
+    private static boolean isReadOnly(final Command<?> command) {
+        return command instanceof AbstractQuery || command instanceof ReadOnlyCommand;
+    }
+
+    /**
+     * A command, which doesn't change the state of the engine, so it can't make jobs executable.
+     */
+    @FunctionalInterface
+    public interface ReadOnlyCommand<T> extends Command<T> {
+    }
+
+}
@@ -0,0 +1,111 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter.impl;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.history.HistoricDecisionInstance;
+import org.camunda.bpm.engine.history.HistoricProcessInstance;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.history.HistoryLevel;
+import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.camunda.bpm.engine.task.Task;
+
+/**
+ * Isolates tests sharing one engine by tenants: each test gets its own tenant, its deployment is bound to that
+ * tenant and the test's thread is authenticated with it. With the engine's tenant check, the test sees only
+ * its own definitions, instances and tasks.
+ */
+public final class TenantIsolation {
+
+    /**
+     * The user authenticated for the tenant, must not be a Camunda admin to keep the tenant check.
+     */
+    private static final String USER_ID = "camunda-junit";
+
+    private static final String DELETE_REASON = "Cleanup after test";
+
+    private TenantIsolation() {
+        throw new AssertionError("No TenantIsolation instances for you!");
+    }
+
+    /**
+     * Returns a new, unique tenant id.
+     */
+    public static String newTenantId() {
+        return "test-" + UUID.randomUUID();
+    }
+
+    /**
+     * Scopes the services of the engine to the tenant on the calling thread.
+     */
+    public static void authenticate(final ProcessEngine processEngine, final String tenantId) {
+        processEngine.getIdentityService().setAuthentication(USER_ID, null, Collections.singletonList(tenantId));
+    }
+
+    /**
+     * Deletes all process instances, standalone tasks and their history of the tenant.
+     * Must be called without authentication, which is restricted to the tenant.
+     */
+    public static void deleteData(final ProcessEngine processEngine, final String tenantId) {
+        final List<String> processInstanceIds = processEngine.getRuntimeService().createProcessInstanceQuery()
+                .tenantIdIn(tenantId)
+                .list().stream()
+                .map(ProcessInstance::getId)
+                .collect(Collectors.toList());
+        if (!processInstanceIds.isEmpty()) {
+            processEngine.getRuntimeService()
+                    .deleteProcessInstancesIfExists(processInstanceIds, DELETE_REASON, true, true, false);
+        }
+
+        final List<String> taskIds = processEngine.getTaskService().createTaskQuery()
+                .tenantIdIn(tenantId)
+                .list().stream()
+                .filter(task -> task.getProcessInstanceId() == null && task.getCaseInstanceId() == null)
+                .map(Task::getId)
+                .collect(Collectors.toList());
+        if (!taskIds.isEmpty()) {
+            processEngine.getTaskService().deleteTasks(taskIds, true);
+        }
+
+        if (((ProcessEngineImpl) processEngine).getProcessEngineConfiguration().getHistoryLevel()
+                == HistoryLevel.HISTORY_LEVEL_NONE) {
+            return;
+        }
+        final List<String> historicProcessInstanceIds = processEngine.getHistoryService()
+                .createHistoricProcessInstanceQuery()
+                .tenantIdIn(tenantId)
+                .list().stream()
+                .map(HistoricProcessInstance::getId)
+                .collect(Collectors.toList());
+        if (!historicProcessInstanceIds.isEmpty()) {
+            processEngine.getHistoryService().deleteHistoricProcessInstancesIfExists(historicProcessInstanceIds);
+        }
+
+        final List<String> historicDecisionInstanceIds = processEngine.getHistoryService()
+                .createHistoricDecisionInstanceQuery()
+                .tenantIdIn(tenantId)
+                .list().stream()
+                .map(HistoricDecisionInstance::getId)
+                .collect(Collectors.toList());
+        if (!historicDecisionInstanceIds.isEmpty()) {
+            processEngine.getHistoryService().deleteHistoricDecisionInstancesBulk(historicDecisionInstanceIds);
+        }
+    }
+
+}
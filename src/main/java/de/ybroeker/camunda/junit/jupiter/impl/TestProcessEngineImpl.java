@@ -15,23 +15,41 @@
  */
 package de.ybroeker.camunda.junit.jupiter.impl;
 
-import java.util.concurrent.atomic.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
 
 import de.ybroeker.camunda.junit.jupiter.TestProcessEngine;
+import org.camunda.bpm.application.ProcessApplicationReference;
 import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.util.ClockUtil;
 import org.camunda.bpm.engine.repository.Deployment;
 
 
+/**
+ * The state of a single test, stored in the test's {@link org.junit.jupiter.api.extension.ExtensionContext.Store}.
+ * <p>
+ * All state is confined to one instance per test, so concurrently running tests never share it.
+ */
 public class TestProcessEngineImpl implements TestProcessEngine {
 
-    public TestProcessEngineImpl(final ProcessEngine processEngine, final AtomicReference<Deployment> deployment) {
-        this.processEngine=processEngine;
-        this.deployment = deployment;
-    }
-
     private final ProcessEngine processEngine;
 
-    private final AtomicReference<Deployment> deployment;
+    private volatile Deployment deployment;
+
+    private final Queue<String> managedDeploymentIds = new ConcurrentLinkedQueue<>();
+
+    private final Set<String> registeredDeploymentIds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean currentTimeSet;
+
+    private volatile SqlStatementCountsImpl sqlStatementCounts = SqlStatementCountsImpl.EMPTY;
+
+    private volatile String tenantId;
+
+    public TestProcessEngineImpl(final ProcessEngine processEngine) {
+        this.processEngine = processEngine;
+    }
 
     @Override
     public ProcessEngine getProcessEngine() {
@@ -40,12 +58,110 @@ public class TestProcessEngineImpl implements TestProcessEngine {
 
     @Override
     public String getDeploymentId() {
-        return deployment.get().getId();
+        return deployment.getId();
     }
 
     @Override
     public Deployment getDeployment() {
-        return deployment.get();
+        return deployment;
+    }
+
+    public void setDeployment(final Deployment deployment) {
+        this.deployment = deployment;
+    }
+
+    @Override
+    public void manageDeployment(final Deployment deployment) {
+        managedDeploymentIds.add(deployment.getId());
+    }
+
+    public Collection<String> getManagedDeploymentIds() {
+        return Collections.unmodifiableCollection(managedDeploymentIds);
+    }
+
+    @Override
+    public Registration registerProcessApplication(final ProcessApplicationReference processApplicationReference) {
+        final Registration registration = TestProcessEngine.super.registerProcessApplication(processApplicationReference);
+        registeredDeploymentIds.add(getDeploymentId());
+        return registration;
+    }
+
+    @Override
+    public void unregisterProcessApplication(final boolean removeProcessDefinitionsFromCache) {
+        TestProcessEngine.super.unregisterProcessApplication(removeProcessDefinitionsFromCache);
+        registeredDeploymentIds.remove(getDeploymentId());
+    }
+
+    /**
+     * Returns the ids of deployments, for which a process application was registered during the test
+     * and is still registered.
+     */
+    public Set<String> getRegisteredDeploymentIds() {
+        return Collections.unmodifiableSet(registeredDeploymentIds);
+    }
+
+    @Override
+    public void setCurrentTime(final Date currentTime) {
+        TestProcessEngine.super.setCurrentTime(currentTime);
+        currentTimeSet = true;
+    }
+
+    public boolean isCurrentTimeSet() {
+        return currentTimeSet;
+    }
+
+    @Override
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public void setTenantId(final String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    @Override
+    public void authenticateTenant() {
+        final String currentTenantId = tenantId;
+        if (currentTenantId != null) {
+            TenantIsolation.authenticate(processEngine, currentTenantId);
+        }
+    }
+
+    @Override
+    public void setInlineJobExecution(final boolean enabled) {
+        if (enabled && !SynchronousJobExecution.isInstalled(getProcessEngineConfiguration())) {
+            throw new IllegalStateException("Inline job execution requires a process engine built by the extension");
+        }
+        SynchronousJobExecution.setInline(enabled);
+    }
+
+    @Override
+    public int executeAllAvailableJobs() {
+        return SynchronousJobExecution.executeAvailableJobs(getManagementService());
+    }
+
+    @Override
+    public int runUntilWaitState() {
+        return SynchronousJobExecution.executeUntilWaitState(getManagementService());
+    }
+
+    @Override
+    public int advanceClockBy(final Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("duration must not be negative, but was " + duration);
+        }
+        currentTimeSet = true;
+        final Date until = new Date(ClockUtil.getCurrentTime().getTime() + duration.toMillis());
+        return SynchronousJobExecution.executeTimersUntil(getManagementService(), until);
+    }
+
+    @Override
+    public SqlStatementCountsImpl getSqlStatementCounts() {
+        return sqlStatementCounts;
+    }
+
+    public void setSqlStatementCounts(final SqlStatementCountsImpl sqlStatementCounts) {
+        this.sqlStatementCounts = sqlStatementCounts;
     }
 
 }
@@ -17,6 +17,12 @@ module de.ybroeker.camunda.junit.jupiter {
     requires transitive camunda.engine;
     requires transitive org.junit.jupiter.api;
 
+    requires camunda.bpmn.model;
+    requires camunda.cmmn.model;
+    requires camunda.dmn.model;
+    requires camunda.xml.model;
+    requires java.sql;
+    requires mybatis;
     requires org.junit.platform.commons;
     requires static org.jetbrains.annotations;
 
@@ -0,0 +1,108 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@Deployment(resources = "Example_Workflow.bpmn")
+public class ClassDeploymentTest {
+
+    private static final AtomicReference<String> DEPLOYMENT_ID = new AtomicReference<>();
+
+    private static final AtomicReference<ProcessEngine> PROCESS_ENGINE = new AtomicReference<>();
+
+    @Test
+    @Order(1)
+    void shouldDeployClassResources(final TestProcessEngine testProcessEngine) {
+        DEPLOYMENT_ID.set(testProcessEngine.getDeploymentId());
+        PROCESS_ENGINE.set(testProcessEngine.getProcessEngine());
+
+        assertThat(testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process")).isNotNull();
+    }
+
+    @Test
+    @Order(2)
+    void shouldReuseClassDeployment(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isEqualTo(DEPLOYMENT_ID.get());
+
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().count()).isZero();
+    }
+
+    @Test
+    @Order(3)
+    @Deployment(resources = "de/ybroeker/camunda/junit/jupiter/Workflow.bpmn")
+    void shouldLayerMethodDeployment(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isNotEqualTo(DEPLOYMENT_ID.get());
+
+        assertThat(testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process")).isNotNull();
+        assertThat(testProcessEngine.getRuntimeService().startProcessInstanceByKey("Workflow")).isNotNull();
+    }
+
+    @Test
+    @Order(4)
+    void shouldRemoveMethodDeployment(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isEqualTo(DEPLOYMENT_ID.get());
+
+        assertThat(testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                           .processDefinitionKey("Workflow").count()).isZero();
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isZero();
+    }
+
+    @Test
+    @Order(5)
+    void shouldSuspendClassDeployment(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRepositoryService().suspendProcessDefinitionByKey("Example_Process");
+    }
+
+    @Test
+    @Order(6)
+    void shouldRedeploySuspendedClassDeployment(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isNotEqualTo(DEPLOYMENT_ID.get());
+
+        assertThat(testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                           .deploymentId(testProcessEngine.getDeploymentId()).active().count()).isEqualTo(1);
+    }
+
+    @Nested
+    class NestedTest {
+
+        @Test
+        @Deployment(resources = "de/ybroeker/camunda/junit/jupiter/Workflow.bpmn")
+        void shouldNotShareDeploymentOfEnclosingClass(final TestProcessEngine testProcessEngine) {
+            assertThat(testProcessEngine.getProcessEngine()).isNotSameAs(PROCESS_ENGINE.get());
+
+            assertThat(testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                               .deploymentId(testProcessEngine.getDeploymentId())
+                               .processDefinitionKey("Example_Process").count()).isZero();
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+/**
+ * Stores of JUnit fall back to their parents, tests must not inherit the state resolved for their class.
+ */
+@ExtendWith(ProcessEngineExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ContextScopeTest {
+
+    private static TestProcessEngine classProcessEngine;
+
+    private static TestProcessEngine firstProcessEngine;
+
+    @BeforeAll
+    static void resolveForClass(final TestProcessEngine testProcessEngine) {
+        classProcessEngine = testProcessEngine;
+    }
+
+    @Test
+    @Order(1)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldNotUseTestProcessEngineOfClass(final TestProcessEngine testProcessEngine) {
+        firstProcessEngine = testProcessEngine;
+
+        assertThat(testProcessEngine).isNotSameAs(classProcessEngine);
+        assertThat(testProcessEngine.getDeploymentId()).isNotNull();
+        assertThat(classProcessEngine.getDeployment()).isNull();
+    }
+
+    @Test
+    @Order(1)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldNotUseProcessEngineLeasedByClass(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngine()).isNotSameAs(classProcessEngine.getProcessEngine());
+    }
+
+    @Test
+    @Order(2)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldNotUseTestProcessEngineOfPreviousTest(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine).isNotSameAs(classProcessEngine).isNotSameAs(firstProcessEngine);
+    }
+
+}
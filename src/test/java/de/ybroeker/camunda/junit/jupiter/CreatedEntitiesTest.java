@@ -0,0 +1,131 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import de.ybroeker.camunda.junit.jupiter.impl.CreatedEntities;
+import de.ybroeker.camunda.junit.jupiter.impl.CreatedEntityTracker;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.task.Task;
+import org.camunda.bpm.engine.test.Deployment;
+import org.camunda.bpm.engine.test.RequiredHistoryLevel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@Deployment(resources = "Example_Workflow.bpmn")
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class CreatedEntitiesTest {
+
+    @AfterEach
+    void createTaskAfterTest(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getTaskService().saveTask(testProcessEngine.getTaskService().newTask());
+    }
+
+    @Test
+    @Order(1)
+    void shouldDeleteCreatedEntities(final TestProcessEngine testProcessEngine) {
+        final CreatedEntityTracker tracker = CreatedEntityTracker.install(testProcessEngine.getProcessEngineConfiguration());
+        final String processInstanceId = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Example_Process").getId();
+        final Task task = testProcessEngine.getTaskService().newTask();
+        testProcessEngine.getTaskService().saveTask(task);
+
+        final CreatedEntities createdEntities = tracker.drain();
+
+        assertThat(createdEntities.isEmpty()).isFalse();
+        assertThat(createdEntities.delete(testProcessEngine.getProcessEngine())).isTrue();
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery()
+                           .processInstanceId(processInstanceId).count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery()
+                           .processInstanceId(processInstanceId).count()).isZero();
+        assertThat(testProcessEngine.getTaskService().createTaskQuery().taskId(task.getId()).count()).isZero();
+        assertThat(tracker.drain().isEmpty()).isTrue();
+    }
+
+    @Test
+    @Order(2)
+    @RequiredHistoryLevel(ProcessEngineConfiguration.HISTORY_FULL)
+    void shouldCreateEntities(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+        testProcessEngine.getTaskService().saveTask(testProcessEngine.getTaskService().newTask());
+        testProcessEngine.getRuntimeService().deleteProcessInstancesAsync(
+                testProcessEngine.getRuntimeService().createProcessInstanceQuery(), "test");
+    }
+
+    @Test
+    @Order(3)
+    @RequiredHistoryLevel(ProcessEngineConfiguration.HISTORY_FULL)
+    void shouldHaveRemovedEntitiesOfPreviousTest(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getTaskService().createTaskQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricTaskInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getManagementService().createBatchQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricBatchQuery().count()).isZero();
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isZero();
+    }
+
+    @Test
+    @Order(4)
+    void shouldDeleteScheduledSuspension(final TestProcessEngine testProcessEngine) {
+        final CreatedEntityTracker tracker = CreatedEntityTracker.install(testProcessEngine.getProcessEngineConfiguration());
+        testProcessEngine.getRepositoryService().suspendProcessDefinitionById(
+                testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                        .deploymentId(testProcessEngine.getDeploymentId()).singleResult().getId(),
+                true, new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isEqualTo(1);
+
+        assertThat(tracker.drain().delete(testProcessEngine.getProcessEngine())).isTrue();
+
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isZero();
+    }
+
+    @Test
+    @Order(5)
+    @RequiredHistoryLevel(ProcessEngineConfiguration.HISTORY_FULL)
+    void shouldDeleteHistoryOutsideOfProcessInstances(final TestProcessEngine testProcessEngine) {
+        final CreatedEntityTracker tracker = CreatedEntityTracker.install(testProcessEngine.getProcessEngineConfiguration());
+        final String processDefinitionId = testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                .deploymentId(testProcessEngine.getDeploymentId()).singleResult().getId();
+        testProcessEngine.getIdentityService().setAuthenticatedUserId("demo");
+        try {
+            testProcessEngine.getRepositoryService().suspendProcessDefinitionById(
+                    processDefinitionId, true, new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)));
+        } finally {
+            testProcessEngine.getIdentityService().clearAuthentication();
+        }
+        assertThat(testProcessEngine.getHistoryService().createHistoricJobLogQuery().count()).isEqualTo(1);
+        assertThat(testProcessEngine.getHistoryService().createUserOperationLogQuery()
+                           .processDefinitionId(processDefinitionId).count()).isPositive();
+
+        assertThat(tracker.drain().delete(testProcessEngine.getProcessEngine())).isTrue();
+
+        assertThat(testProcessEngine.getHistoryService().createHistoricJobLogQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createUserOperationLogQuery()
+                           .processDefinitionId(processDefinitionId).count()).isZero();
+    }
+
+}
@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class DeploymentCacheTest {
+
+    private static final AtomicReference<String> FIRST_DEPLOYMENT = new AtomicReference<>();
+
+    @Test
+    @Order(1)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void firstTestShouldDeploy(final TestProcessEngine testProcessEngine) {
+        FIRST_DEPLOYMENT.set(testProcessEngine.getDeploymentId());
+
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isEqualTo(1);
+    }
+
+    @Test
+    @Order(2)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void secondTestShouldReuseDeploymentWithoutRuntimeData(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isEqualTo(FIRST_DEPLOYMENT.get());
+
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().count()).isZero();
+    }
+
+    @Test
+    @Order(3)
+    @Deployment(resources = "/Example_Workflow.bpmn")
+    void conflictingDeploymentShouldEvictCachedDeployment(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isNotEqualTo(FIRST_DEPLOYMENT.get());
+
+        assertThat(testProcessEngine.getRepositoryService().createDeploymentQuery().count()).isEqualTo(1);
+        assertThat(testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                           .processDefinitionKey("Example_Process").singleResult().getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    @Order(4)
+    @Deployment(resources = "/Example_Workflow.bpmn")
+    void suspendingDefinitionShouldEvictCachedDeployment(final TestProcessEngine testProcessEngine) {
+        FIRST_DEPLOYMENT.set(testProcessEngine.getDeploymentId());
+
+        testProcessEngine.getRepositoryService().suspendProcessDefinitionByKey("Example_Process");
+    }
+
+    @Test
+    @Order(5)
+    @Deployment(resources = "/Example_Workflow.bpmn")
+    void nextTestShouldSeeActiveDefinition(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getDeploymentId()).isNotEqualTo(FIRST_DEPLOYMENT.get());
+
+        assertThat(testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                           .deploymentId(testProcessEngine.getDeploymentId()).active().count()).isEqualTo(1);
+        assertThat(testProcessEngine.getRepositoryService().createDeploymentQuery().count()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@TestMethodOrder(DeploymentMethodOrderer.class)
+public class DeploymentMethodOrdererTest {
+
+    private static final List<String> DEPLOYED_RESOURCES = Collections.synchronizedList(new ArrayList<>());
+
+    @AfterAll
+    static void shouldGroupTestsByDeployment() {
+        assertThat(DEPLOYED_RESOURCES).hasSize(4);
+        int groupChanges = 0;
+        for (int i = 1; i < DEPLOYED_RESOURCES.size(); i++) {
+            if (!DEPLOYED_RESOURCES.get(i).equals(DEPLOYED_RESOURCES.get(i - 1))) {
+                groupChanges++;
+            }
+        }
+        assertThat(groupChanges).as("order %s", DEPLOYED_RESOURCES).isEqualTo(1);
+    }
+
+    @Test
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void a(final TestProcessEngine testProcessEngine) {
+        record(testProcessEngine);
+    }
+
+    @Test
+    @Deployment(resources = "de/ybroeker/camunda/junit/jupiter/Workflow.bpmn")
+    void b(final TestProcessEngine testProcessEngine) {
+        record(testProcessEngine);
+    }
+
+    @Test
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void c(final TestProcessEngine testProcessEngine) {
+        record(testProcessEngine);
+    }
+
+    @Test
+    @Deployment(resources = "de/ybroeker/camunda/junit/jupiter/Workflow.bpmn")
+    void d(final TestProcessEngine testProcessEngine) {
+        record(testProcessEngine);
+    }
+
+    private static void record(final TestProcessEngine testProcessEngine) {
+        DEPLOYED_RESOURCES.add(testProcessEngine.getRepositoryService()
+                                       .getDeploymentResourceNames(testProcessEngine.getDeploymentId())
+                                       .toString());
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class EnsureCleanAfterTestTest {
+
+    private static final AtomicReference<ProcessEngine> PROCESS_ENGINE = new AtomicReference<>();
+
+    @Test
+    @Order(1)
+    @EnsureCleanAfterTest
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldCleanAfterTest(final TestProcessEngine testProcessEngine) {
+        PROCESS_ENGINE.set(testProcessEngine.getProcessEngine());
+
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+    }
+
+    @Test
+    @Order(2)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldReuseRestoredProcessEngine(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngine()).isSameAs(PROCESS_ENGINE.get());
+
+        assertThat(testProcessEngine.getRepositoryService().createDeploymentQuery().count()).isEqualTo(1);
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process")).isNotNull();
+    }
+
+}
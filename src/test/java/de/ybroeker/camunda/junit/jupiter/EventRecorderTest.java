@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import de.ybroeker.camunda.junit.jupiter.TestProcessEngine.Registration;
+import org.camunda.bpm.engine.delegate.DelegateTask;
+import org.camunda.bpm.engine.delegate.ExecutionListener;
+import org.camunda.bpm.engine.delegate.TaskListener;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static de.ybroeker.camunda.junit.jupiter.TestProcessApplicationUtil.processApplication;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@Deployment(resources = "Example_Workflow.bpmn")
+public class EventRecorderTest {
+
+    @Test
+    @SuppressWarnings("try")
+    void shouldRecordEventsOfProcessInstance(final TestProcessEngine testProcessEngine) {
+        final EventRecorder recorder = new EventRecorder();
+
+        final String processInstanceId;
+        try (Registration r = testProcessEngine.registerProcessApplication(processApplication(recorder))) {
+            processInstanceId = testProcessEngine.getRuntimeService()
+                    .startProcessInstanceByKey("Example_Process").getId();
+            completeTasks(testProcessEngine, processInstanceId);
+        }
+
+        assertThat(recorder.query().type(ExecutionListener.EVENTNAME_START).activityIds())
+                .containsExactly("StartEvent_1", "StartEvent_1", "Task_04g0t0s", "EndEvent_0y7hm3k");
+        assertThat(recorder.query().type(ExecutionListener.EVENTNAME_TAKE).activityIds())
+                .containsExactly("SequenceFlow_1uwpfk7", "SequenceFlow_1yj87gp");
+        assertThat(recorder.query().taskEvents().type(TaskListener.EVENTNAME_COMPLETE).activityIds())
+                .containsExactly("Task_04g0t0s");
+        recorder.query().processInstanceId(processInstanceId).activityId("Task_04g0t0s").executionEvents()
+                .assertCount(2);
+        assertThatThrownBy(() -> recorder.query().taskEvents().assertCount(0))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("Expected 0 recorded events, but found 2");
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void shouldRecordConcurrentProcessInstances(final TestProcessEngine testProcessEngine) {
+        final EventRecorder recorder = new EventRecorder();
+
+        final List<String> processInstanceIds;
+        try (Registration r = testProcessEngine.registerProcessApplication(processApplication(recorder))) {
+            processInstanceIds = IntStream.range(0, 20).parallel()
+                    .mapToObj(i -> testProcessEngine.getRuntimeService()
+                            .startProcessInstanceByKey("Example_Process").getId())
+                    .collect(Collectors.toList());
+        }
+
+        assertThat(recorder.getOverwrittenCount()).isZero();
+        assertThat(recorder.query().taskEvents().type(TaskListener.EVENTNAME_CREATE).count()).isEqualTo(20);
+        processInstanceIds.forEach(id -> recorder.query().processInstanceId(id).taskEvents().assertCount(1));
+        assertThat(recorder.getEvents()).extracting(EventRecorder.Event::getSequence).isSorted();
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void shouldKeepLatestEventsIfFull(final TestProcessEngine testProcessEngine) {
+        final EventRecorder recorder = new EventRecorder(3);
+
+        try (Registration r = testProcessEngine.registerProcessApplication(processApplication(recorder))) {
+            testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+        }
+
+        assertThat(recorder.getEvents()).hasSize(4);
+        assertThat(recorder.getOverwrittenCount()).isEqualTo(recorder.getRecordedCount() - 4);
+        assertThat(recorder.getEvents()).last()
+                .extracting(EventRecorder.Event::getType)
+                .isEqualTo(TaskListener.EVENTNAME_CREATE);
+
+        recorder.clear();
+
+        assertThat(recorder.getEvents()).isEmpty();
+    }
+
+    @Test
+    void shouldKeepEventsConsistentWhenWritersWrapAround() throws Exception {
+        final EventRecorder recorder = new EventRecorder(1);
+        final int threads = 8;
+        final int eventsPerThread = 100_000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                final DelegateTask task = delegateTask("writer-" + thread);
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int event = 0; event < eventsPerThread; event++) {
+                        recorder.notify(task);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            //events read while written must not mix the fields of different writers
+            final List<EventRecorder.Event> mixed = new ArrayList<>();
+            while (writers.stream().anyMatch(writer -> !writer.isDone())) {
+                recorder.getEvents().stream().filter(event -> !isConsistent(event)).forEach(mixed::add);
+            }
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            assertThat(mixed).isEmpty();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final long recorded = (long) threads * eventsPerThread;
+        assertThat(recorder.getRecordedCount()).isEqualTo(recorded);
+        assertThat(recorder.getEvents()).extracting(EventRecorder.Event::getSequence)
+                .containsExactly(recorded - 1);
+        assertThat(recorder.getEvents()).allMatch(EventRecorderTest::isConsistent);
+    }
+
+    private static boolean isConsistent(final EventRecorder.Event event) {
+        return event.getType().equals(event.getActivityId()) && event.getType().equals(event.getProcessInstanceId());
+    }
+
+    /**
+     * Returns a task, which has the same {@code name} as event name, task definition key and process instance id.
+     */
+    private static DelegateTask delegateTask(final String name) {
+        return (DelegateTask) Proxy.newProxyInstance(DelegateTask.class.getClassLoader(),
+                                                     new Class<?>[]{DelegateTask.class},
+                                                     (proxy, method, args) -> name);
+    }
+
+    private static void completeTasks(final TestProcessEngine testProcessEngine, final String processInstanceId) {
+        testProcessEngine.getTaskService().createTaskQuery().processInstanceId(processInstanceId).list()
+                .forEach(task -> testProcessEngine.getTaskService().complete(task.getId()));
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.function.Consumer;
+
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.MockExtensionContext;
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.MockParameterContext;
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.TestCase;
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.UndeployedTestCase;
+import de.ybroeker.camunda.junit.jupiter.impl.FlowNodeCoverage;
+import org.camunda.bpm.engine.delegate.ExecutionListener;
+import org.camunda.bpm.engine.delegate.TaskListener;
+import org.camunda.bpm.engine.repository.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class FlowNodeCoverageTest {
+
+    @Test
+    void shouldReportCoveragePerResource(@TempDir final Path tempDir) throws Exception {
+        Path reportFile = tempDir.resolve("coverage.txt");
+
+        runTest(reportFile, testProcessEngine ->
+                testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process"));
+
+        assertThat(Files.readAllLines(reportFile, StandardCharsets.UTF_8)).containsExactly(
+                "Example_Workflow.bpmn",
+                "  Example_Process: 2/3 flow nodes, 1/2 sequence flows (60.0%)",
+                "    not covered: EndEvent_0y7hm3k, SequenceFlow_1yj87gp");
+    }
+
+    @Test
+    void shouldReportResourcesWithSameProcessSeparately(@TempDir final Path tempDir) throws Exception {
+        Path reportFile = tempDir.resolve("coverage.txt");
+        MockExtensionContext root = rootContext(reportFile);
+
+        runTest(root, TestCase.class, testProcessEngine ->
+                testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process"));
+        runTest(root, CoverageTestCase.class, testProcessEngine -> {
+        });
+        FlowNodeCoverage.forReport(root, reportFile).close();
+
+        assertThat(Files.readAllLines(reportFile, StandardCharsets.UTF_8)).containsExactly(
+                "Example_Workflow.bpmn",
+                "  Example_Process: 2/3 flow nodes, 1/2 sequence flows (60.0%)",
+                "    not covered: EndEvent_0y7hm3k, SequenceFlow_1yj87gp",
+                "de/ybroeker/camunda/junit/jupiter/coverage/Example_Workflow.bpmn",
+                "  Example_Process: 0/3 flow nodes, 0/2 sequence flows (0.0%)",
+                "    not covered: StartEvent_1, EndEvent_0y7hm3k, Task_04g0t0s, "
+                        + "SequenceFlow_1yj87gp, SequenceFlow_1uwpfk7");
+    }
+
+    @Test
+    void shouldNotRegisterProcessApplication(@TempDir final Path tempDir) throws Exception {
+        Path reportFile = tempDir.resolve("coverage.txt");
+        List<String> events = new ArrayList<>();
+
+        runTest(reportFile, testProcessEngine -> {
+            ExecutionListener executionListener = execution -> events.add(execution.getEventName());
+            testProcessEngine.registerProcessApplication(
+                    TestProcessApplicationUtil.processApplication(executionListener, (TaskListener) null));
+            testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+            testProcessEngine.unregisterProcessApplication();
+
+            assertThat(testProcessEngine.getManagementService()
+                               .getProcessApplicationForDeployment(testProcessEngine.getDeploymentId()))
+                    .isNull();
+            testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+        });
+
+        assertThat(events).isNotEmpty();
+        assertThat(Files.readAllLines(reportFile, StandardCharsets.UTF_8))
+                .contains("  Example_Process: 2/3 flow nodes, 1/2 sequence flows (60.0%)");
+    }
+
+    @Test
+    void shouldReportResourcesByPath(@TempDir final Path tempDir) throws Exception {
+        Path reportFile = tempDir.resolve("coverage.txt");
+        MockExtensionContext root = rootContext(reportFile);
+        byte[] content = Files.readAllBytes(
+                Paths.get(getClass().getResource("/Example_Workflow.bpmn").toURI()));
+
+        runTest(root, UndeployedTestCase.class, testProcessEngine -> {
+            FlowNodeCoverage coverage = FlowNodeCoverage.forReport(root, reportFile);
+            for (String name : Arrays.asList("Workflow.bpmn", "/Workflow.bpmn", "Example_Workflow.bpmn")) {
+                Deployment deployment = testProcessEngine.getRepositoryService()
+                        .createDeployment().addString(name, new String(content, StandardCharsets.UTF_8)).deploy();
+                coverage.addDeployment(testProcessEngine.getProcessEngine(), getClass(), deployment,
+                                       Collections.singletonMap(name, content));
+                testProcessEngine.getRepositoryService().deleteDeployment(deployment.getId(), true);
+            }
+        });
+        FlowNodeCoverage.forReport(root, reportFile).close();
+
+        assertThat(Files.readAllLines(reportFile, StandardCharsets.UTF_8))
+                .filteredOn(line -> !line.startsWith(" "))
+                .containsExactly("Example_Workflow.bpmn",
+                                 "Workflow.bpmn",
+                                 "de/ybroeker/camunda/junit/jupiter/Workflow.bpmn");
+    }
+
+    @Test
+    void shouldNotCollectIfDisabled() {
+        assertThat(FlowNodeCoverage.DISABLED.isEnabled()).isFalse();
+        FlowNodeCoverage.DISABLED.close();
+    }
+
+    /**
+     * Runs a test collecting coverage into {@code reportFile} and writes the report.
+     */
+    private static void runTest(final Path reportFile, final Consumer<TestProcessEngine> test) throws Exception {
+        MockExtensionContext root = rootContext(reportFile);
+        runTest(root, TestCase.class, test);
+        FlowNodeCoverage.forReport(root, reportFile).close();
+    }
+
+    /**
+     * Runs the test method of {@code testClass} in a child of {@code root}.
+     */
+    private static void runTest(final MockExtensionContext root,
+                                final Class<?> testClass,
+                                final Consumer<TestProcessEngine> test) throws Exception {
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        Method testMethod = testClass.getDeclaredMethod("test", TestProcessEngine.class);
+        MockExtensionContext extensionContext = new MockExtensionContext(testMethod, root);
+
+        processEngineExtension.beforeTestExecution(extensionContext);
+        ParameterContext parameterContext = new MockParameterContext(
+                testClass.getDeclaredConstructor().newInstance(), testMethod.getParameters()[0]);
+        TestProcessEngine testProcessEngine = (TestProcessEngine) processEngineExtension
+                .resolveParameter(parameterContext, extensionContext);
+        try {
+            test.accept(testProcessEngine);
+        } finally {
+            processEngineExtension.afterTestExecution(extensionContext);
+        }
+    }
+
+    private static MockExtensionContext rootContext(final Path reportFile) throws Exception {
+        MockExtensionContext root = new MockExtensionContext(
+                TestCase.class.getDeclaredMethod("test", TestProcessEngine.class));
+        root.configurationParameters.put(ProcessEngineExtension.COVERAGE_REPORT_PROPERTY, reportFile.toString());
+        return root;
+    }
+
+    static class CoverageTestCase {
+        @Test
+        @org.camunda.bpm.engine.test.Deployment(resources = {"coverage/Example_Workflow.bpmn"})
+        void test(final TestProcessEngine testProcessEngine) {
+        }
+    }
+
+}
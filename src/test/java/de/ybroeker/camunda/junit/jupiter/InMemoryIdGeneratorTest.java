@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+import java.util.stream.*;
+
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@Deployment(resources = "Example_Workflow.bpmn")
+public class InMemoryIdGeneratorTest {
+
+    @RegisterExtension
+    static final ProcessEngineExtension extension = ProcessEngineExtension.builder().build();
+
+    @Test
+    void shouldContinueSequenceOfScopeAfterReset() {
+        final InMemoryIdGenerator idGenerator = new InMemoryIdGenerator();
+
+        idGenerator.reset("test");
+        final List<String> first = Stream.generate(idGenerator::getNextId).limit(3).collect(Collectors.toList());
+        idGenerator.reset("other");
+        final String other = idGenerator.getNextId();
+        idGenerator.reset("test");
+        final String next = idGenerator.getNextId();
+
+        assertThat(first).doesNotHaveDuplicates().doesNotContain(other, next);
+        assertThat(next).startsWith(first.get(0).substring(0, first.get(0).lastIndexOf('-') + 1));
+    }
+
+    @Test
+    void shouldUseNewPrefixAfterRelease() {
+        final InMemoryIdGenerator idGenerator = new InMemoryIdGenerator();
+
+        idGenerator.reset("test");
+        final String first = idGenerator.getNextId();
+        idGenerator.release("test");
+        idGenerator.reset("test");
+        final String second = idGenerator.getNextId();
+
+        assertThat(first).isEqualTo(Integer.toHexString("test".hashCode()) + "-1");
+        assertThat(second).isEqualTo(Integer.toHexString("test".hashCode()) + ".1-1");
+    }
+
+    @Test
+    void shouldGenerateDistinctIdsForScopesWithSameHashCode() {
+        final InMemoryIdGenerator idGenerator = new InMemoryIdGenerator();
+        assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+        idGenerator.reset("Aa");
+        final String first = idGenerator.getNextId();
+        idGenerator.reset("BB");
+        final String second = idGenerator.getNextId();
+        idGenerator.reset("Aa");
+
+        assertThat(Arrays.asList(first, second, idGenerator.getNextId())).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void shouldGenerateDistinctIdsConcurrently() {
+        final InMemoryIdGenerator idGenerator = new InMemoryIdGenerator();
+
+        final Set<String> ids = IntStream.range(0, 10_000).parallel()
+                .mapToObj(i -> idGenerator.getNextId())
+                .collect(Collectors.toSet());
+
+        assertThat(ids).hasSize(10_000);
+    }
+
+    @Test
+    void shouldUseInMemoryIdGenerator(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngineConfiguration().getIdGenerator())
+                .isInstanceOf(InMemoryIdGenerator.class);
+
+        final String id = testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process").getId();
+
+        assertThat(id).matches("[0-9a-f]+(\\.\\d+)?-\\d+");
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import de.ybroeker.camunda.junit.jupiter.impl.LatencyHistogram;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class LatencyHistogramTest {
+
+    @Test
+    void shouldApproximatePercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getPercentile(50)).isCloseTo(500_000L, Percentage.withPercentage(7));
+        assertThat(histogram.getPercentile(99)).isCloseTo(990_000L, Percentage.withPercentage(7));
+        assertThat(histogram.getPercentile(99.9)).isCloseTo(999_000L, Percentage.withPercentage(7));
+        assertThat(histogram.getPercentile(100)).isEqualTo(1_000_000L);
+        assertThat(histogram.getMax()).isEqualTo(1_000_000L);
+        assertThat(histogram.getMean()).isEqualTo(500_500L);
+    }
+
+    @Test
+    void shouldRecordSmallValuesExactly() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(7);
+
+        assertThat(histogram.getPercentile(50)).isEqualTo(3);
+        assertThat(histogram.getPercentile(100)).isEqualTo(7);
+    }
+
+}
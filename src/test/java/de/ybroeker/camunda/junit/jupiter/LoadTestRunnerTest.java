@@ -0,0 +1,45 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+public class LoadTestRunnerTest {
+
+    @Test
+    @LoadTest(instances = 50, warmUpInstances = 5, concurrency = 4)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldDriveInstancesToCompletion(final LoadTestRunner runner, final TestProcessEngine testProcessEngine) {
+        final LoadTestResult result = runner.run("Example_Process");
+
+        assertThat(result.getInstances()).isEqualTo(50);
+        assertThat(result.getThroughput()).isPositive();
+        assertThat(result.getP50()).isLessThanOrEqualTo(result.getP99());
+        assertThat(result.getP99()).isLessThanOrEqualTo(result.getP999());
+        assertThat(result.getP999()).isLessThanOrEqualTo(result.getMax());
+
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isZero();
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().finished().count())
+                .isEqualTo(55);
+    }
+
+}
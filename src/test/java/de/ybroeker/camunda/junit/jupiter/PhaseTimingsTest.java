@@ -0,0 +1,61 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.MockExtensionContext;
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.TestCase;
+import de.ybroeker.camunda.junit.jupiter.impl.PhaseTimings;
+import de.ybroeker.camunda.junit.jupiter.impl.PhaseTimings.Phase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class PhaseTimingsTest {
+
+    @Test
+    void shouldReportSlowestTestsAndPhases(@TempDir final Path tempDir) throws Exception {
+        Method testMethod = TestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
+        ExtensionContext root = new MockExtensionContext(testMethod);
+        ExtensionContext fastTest = new MockExtensionContext(testMethod, root);
+        ExtensionContext slowTest = new MockExtensionContext(testMethod, root);
+        Path reportFile = tempDir.resolve("timings.txt");
+
+        PhaseTimings timings = PhaseTimings.forReport(fastTest, reportFile);
+        assertThat(PhaseTimings.forReport(slowTest, reportFile)).isSameAs(timings);
+
+        timings.run(fastTest, Phase.DEPLOY, () -> { });
+        timings.run(slowTest, Phase.DELETE_DEPLOYMENT, () -> LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50)));
+        timings.close();
+
+        List<String> report = Files.readAllLines(reportFile, StandardCharsets.UTF_8);
+        assertThat(report.get(0)).isEqualTo("Slowest tests (2 of 2)");
+        assertThat(report.get(1)).contains(slowTest.getDisplayName()).contains("deployment deletion");
+        assertThat(report.get(2)).contains(fastTest.getDisplayName()).contains("deploy");
+        assertThat(report.get(report.indexOf("Slowest phases") + 2)).endsWith("deployment deletion");
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEngineConfigurations;
+import java.util.UUID;
+
+import org.camunda.bpm.application.impl.event.ProcessApplicationEventListenerPlugin;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.jobexecutor.DefaultJobExecutor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class ProcessEngineConfigurationsTest {
+
+    @Test
+    void shouldCopyConfiguredProperties() {
+        ProcessEngineConfigurationImpl configuration =
+                (ProcessEngineConfigurationImpl) ProcessEngineConfigurations.fromResource("camunda.cfg.xml");
+
+        assertThat(configuration).isInstanceOf(StandaloneInMemProcessEngineConfiguration.class);
+        assertThat(configuration.getProcessEnginePlugins())
+                .hasSize(1)
+                .hasOnlyElementsOfType(ProcessApplicationEventListenerPlugin.class);
+    }
+
+    @Test
+    void shouldNotShareConfigurations() {
+        ProcessEngineConfigurationImpl first =
+                (ProcessEngineConfigurationImpl) ProcessEngineConfigurations.fromResource("camunda.cfg.xml");
+        ProcessEngineConfigurationImpl second =
+                (ProcessEngineConfigurationImpl) ProcessEngineConfigurations.fromResource("camunda.cfg.xml");
+
+        first.setJdbcUrl("jdbc:h2:mem:first");
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getJdbcUrl()).isNotEqualTo("jdbc:h2:mem:first");
+        assertThat(second.getProcessEnginePlugins()).isNotSameAs(first.getProcessEnginePlugins());
+        assertThat(second.getProcessEnginePlugins().get(0)).isNotSameAs(first.getProcessEnginePlugins().get(0));
+    }
+
+    @Test
+    void shouldKeepConfiguredBeanOfDefaultClass() {
+        ProcessEngineConfigurationImpl first =
+                (ProcessEngineConfigurationImpl) ProcessEngineConfigurations.fromResource("job-executor.cfg.xml");
+        ProcessEngineConfigurationImpl second =
+                (ProcessEngineConfigurationImpl) ProcessEngineConfigurations.fromResource("job-executor.cfg.xml");
+
+        assertThat(second.getJobExecutor()).isNotSameAs(first.getJobExecutor());
+        assertThat(second.getJobExecutor().getMaxJobsPerAcquisition()).isEqualTo(7);
+
+        ProcessEngine processEngine = first.setJdbcUrl("jdbc:h2:mem:" + UUID.randomUUID()).buildProcessEngine();
+        try {
+            assertThat(((ProcessEngineImpl) processEngine).getProcessEngineConfiguration().getJobExecutor()
+                               .getMaxJobsPerAcquisition()).isEqualTo(7);
+        } finally {
+            processEngine.close();
+        }
+    }
+
+    /**
+     * Creates its own job executor, like other configuration classes create their defaults.
+     */
+    public static class JobExecutorConfiguration extends StandaloneInMemProcessEngineConfiguration {
+
+        public JobExecutorConfiguration() {
+            this.jobExecutor = new DefaultJobExecutor();
+        }
+    }
+
+}
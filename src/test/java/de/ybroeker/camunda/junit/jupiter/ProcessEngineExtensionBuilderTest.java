@@ -0,0 +1,68 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.test.Deployment;
+import org.camunda.bpm.engine.test.RequiredHistoryLevel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@Deployment(resources = "Example_Workflow.bpmn")
+public class ProcessEngineExtensionBuilderTest {
+
+    @RegisterExtension
+    static final ProcessEngineExtension extension = ProcessEngineExtension.builder()
+            .configure(configuration -> configuration.setDefaultNumberOfRetries(1))
+            .build();
+
+    @Test
+    void shouldApplyFastTestPreset(final TestProcessEngine testProcessEngine) {
+        final ProcessEngineConfigurationImpl configuration = testProcessEngine.getProcessEngineConfiguration();
+
+        assertThat(configuration.isJobExecutorActivate()).isFalse();
+        assertThat(configuration.getJobExecutor().isActive()).isFalse();
+        assertThat(configuration.isMetricsEnabled()).isFalse();
+        assertThat(configuration.isJdbcBatchProcessing()).isTrue();
+        assertThat(configuration.isJobExecutorDeploymentAware()).isTrue();
+        assertThat(configuration.getHistoryLevel().getName()).isEqualTo(ProcessEngineConfiguration.HISTORY_NONE);
+    }
+
+    @Test
+    void shouldApplyCustomizations(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngineConfiguration().getDefaultNumberOfRetries()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExecuteProcess(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isEqualTo(1);
+    }
+
+    @Test
+    @RequiredHistoryLevel(ProcessEngineConfiguration.HISTORY_FULL)
+    void shouldUseRequiredHistoryLevel(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngineConfiguration().getHistoryLevel().getName())
+                .isEqualTo(ProcessEngineConfiguration.HISTORY_FULL);
+        assertThat(testProcessEngine.getProcessEngineConfiguration().isMetricsEnabled()).isFalse();
+    }
+
+}
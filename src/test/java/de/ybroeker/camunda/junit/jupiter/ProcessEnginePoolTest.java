@@ -0,0 +1,230 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.MockExtensionContext;
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEngineFactory;
+import de.ybroeker.camunda.junit.jupiter.impl.ProcessEnginePool;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.ProcessEngineException;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.cfg.ProcessEngineConfigurationImpl;
+import org.camunda.bpm.engine.impl.cfg.StandaloneInMemProcessEngineConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class ProcessEnginePoolTest {
+
+    private ProcessEnginePool pool;
+
+    @BeforeEach
+    void createPool() throws NoSuchMethodException {
+        MockExtensionContext extensionContext = new MockExtensionContext(
+                TestProcessExtensionTest.TestCase.class.getDeclaredMethod("test", TestProcessEngine.class));
+        pool = ProcessEnginePool.forConfiguration(extensionContext,
+                                                  ProcessEnginePool.Options.configurationResource("camunda.cfg.xml"));
+    }
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void shouldReuseReturnedProcessEngine() {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEngine processEngine = first.getProcessEngine();
+        first.close();
+
+        ProcessEnginePool.Lease second = pool.lease();
+
+        assertThat(second.getProcessEngine()).isSameAs(processEngine);
+    }
+
+    @Test
+    void shouldNotShareLeasedProcessEngine() {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEnginePool.Lease second = pool.lease();
+
+        assertThat(second.getProcessEngine()).isNotSameAs(first.getProcessEngine());
+    }
+
+    @Test
+    void shouldInitializeDatabaseFromTemplate() {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEnginePool.Lease second = pool.lease();
+
+        ProcessEngine processEngine = second.getProcessEngine();
+        processEngine.getRepositoryService().createDeployment().addClasspathResource("Example_Workflow.bpmn").deploy();
+
+        assertThat(processEngine.getRepositoryService().createProcessDefinitionQuery().count()).isEqualTo(1);
+        assertThat(first.getProcessEngine().getRepositoryService().createProcessDefinitionQuery().count()).isZero();
+    }
+
+    @Test
+    void shouldNotReuseDiscardedProcessEngine() {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEngine processEngine = first.getProcessEngine();
+        first.discard();
+
+        ProcessEnginePool.Lease second = pool.lease();
+
+        assertThat(second.getProcessEngine()).isNotSameAs(processEngine);
+    }
+
+    @Test
+    void shouldRejectUseOfDiscardedLease() {
+        ProcessEnginePool.Lease lease = pool.lease();
+        lease.discard();
+
+        assertThatThrownBy(lease::getProcessEngine).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(lease::getDeploymentCache).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(lease::getCreatedEntityTracker).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(lease::getSqlStatementCounter).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldNotTrackEntitiesOfExternalProcessEngine() throws NoSuchMethodException {
+        ProcessEngine processEngine = pool.lease().getProcessEngine();
+        org.apache.ibatis.session.Configuration sqlConfiguration = ((ProcessEngineImpl) processEngine)
+                .getProcessEngineConfiguration().getSqlSessionFactory().getConfiguration();
+        int interceptors = sqlConfiguration.getInterceptors().size();
+        MockExtensionContext extensionContext = new MockExtensionContext(
+                TestProcessExtensionTest.TestCase.class.getDeclaredMethod("test", TestProcessEngine.class));
+
+        ProcessEnginePool.Lease lease = ProcessEnginePool.forProcessEngine(extensionContext, processEngine).lease();
+
+        assertThatThrownBy(lease::getCreatedEntityTracker).isInstanceOf(IllegalStateException.class);
+        assertThat(sqlConfiguration.getInterceptors()).hasSize(interceptors);
+    }
+
+    @Test
+    void shouldDiscardProcessEngineIfDatabaseCannotBeRestored() throws SQLException {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEngine processEngine = first.getProcessEngine();
+        first.takeDatabaseSnapshot();
+        try (Connection connection = ((ProcessEngineImpl) processEngine).getProcessEngineConfiguration()
+                .getDataSource().getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE ACT_RU_METER_LOG RENAME TO ACT_RU_METER_LOG_MOVED");
+        }
+
+        assertThatThrownBy(first::reset).isInstanceOf(ProcessEngineException.class);
+        assertThat(first.isReturned()).isTrue();
+
+        ProcessEnginePool.Lease second = pool.lease();
+
+        assertThat(second.getProcessEngine()).isNotSameAs(processEngine);
+    }
+
+    @Test
+    void shouldTakeDatabaseSnapshotOnDemand() throws Exception {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEngine processEngine = first.getProcessEngine();
+        byte[] content = Files.readAllBytes(Paths.get(getClass().getResource("/Example_Workflow.bpmn").toURI()));
+        first.getDeploymentCache().deploy("cached", Collections.singletonMap("Example_Workflow.bpmn", content));
+
+        assertThat(first.isDatabaseSnapshotMissing()).isTrue();
+        first.takeDatabaseSnapshot();
+        assertThat(first.isDatabaseSnapshotMissing()).isFalse();
+        assertThat(processEngine.getRepositoryService().createDeploymentQuery().count()).isZero();
+
+        processEngine.getRepositoryService().createDeployment().addClasspathResource("Example_Workflow.bpmn").deploy();
+        first.reset();
+        first.close();
+
+        ProcessEnginePool.Lease second = pool.lease();
+        assertThat(second.getProcessEngine()).isSameAs(processEngine);
+        assertThat(second.isDatabaseSnapshotMissing()).isFalse();
+        assertThat(processEngine.getRepositoryService().createDeploymentQuery().count()).isZero();
+    }
+
+    @Test
+    void shouldNotResetWithoutDatabaseSnapshot() {
+        ProcessEnginePool.Lease first = pool.lease();
+        ProcessEngine processEngine = first.getProcessEngine();
+
+        first.reset();
+
+        assertThat(first.isReturned()).isTrue();
+        assertThat(pool.lease().getProcessEngine()).isNotSameAs(processEngine);
+    }
+
+    @Test
+    void shouldCloseUnusedWarmUp() throws SQLException {
+        AtomicReference<ProcessEngineConfigurationImpl> configuration = new AtomicReference<>();
+        String configurationKey = ProcessEnginePoolTest.class.getName() + "@" + UUID.randomUUID();
+        ProcessEngineFactory.warmUp(configurationKey, () -> {
+            configuration.set(new StandaloneInMemProcessEngineConfiguration());
+            return configuration.get();
+        }, true, null);
+
+        ProcessEngineFactory.closeWarmUp(configurationKey);
+
+        try (Connection connection = configuration.get().getDataSource().getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet tables = statement.executeQuery(
+                     "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE 'ACT_%'")) {
+            tables.next();
+            assertThat(tables.getInt(1)).isZero();
+        }
+    }
+
+    @Test
+    void shouldTakeWarmUpOnlyWithSameOptions() {
+        AtomicInteger configurations = new AtomicInteger();
+        Supplier<ProcessEngineConfiguration> configuration = () -> {
+            configurations.incrementAndGet();
+            return new StandaloneInMemProcessEngineConfiguration();
+        };
+        String configurationKey = ProcessEnginePoolTest.class.getName() + "@" + UUID.randomUUID();
+        ProcessEngineFactory.warmUp(configurationKey, configuration, false, ProcessEngineConfiguration.HISTORY_FULL);
+
+        ProcessEngine defaultProcessEngine = new ProcessEngineFactory(configurationKey, configuration, true, null)
+                .get();
+        ProcessEngine fullProcessEngine = new ProcessEngineFactory(configurationKey, configuration, false,
+                                                                   ProcessEngineConfiguration.HISTORY_FULL).get();
+        try {
+            assertThat(defaultProcessEngine.getProcessEngineConfiguration().getHistory())
+                    .isNotEqualTo(ProcessEngineConfiguration.HISTORY_FULL);
+            assertThat(fullProcessEngine.getProcessEngineConfiguration().getHistory())
+                    .isEqualTo(ProcessEngineConfiguration.HISTORY_FULL);
+            assertThat(configurations).hasValue(2);
+        } finally {
+            defaultProcessEngine.close();
+            fullProcessEngine.close();
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.util.*;
+
+import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@Deployment(resources = {"Example_Workflow.bpmn", "Async_Workflow.bpmn"})
+class ProcessInstanceSnapshotTest {
+
+    @Test
+    void shouldSnapshotWaitingProcessInstance(final TestProcessEngine testProcessEngine) {
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Example_Process", Collections.singletonMap("amount", 42));
+
+        ProcessInstanceSnapshot snapshot = testProcessEngine.snapshot(processInstance.getId());
+
+        assertThat(snapshot.isEnded()).isFalse();
+        assertThat(snapshot.getActiveActivityIds()).containsExactly("Task_04g0t0s");
+        assertThat(snapshot.isActive("Task_04g0t0s")).isTrue();
+        assertThat(snapshot.findTask("Task_04g0t0s")).isPresent();
+        assertThat(snapshot.getJobs()).isEmpty();
+        assertThat(snapshot.getIncidents()).isEmpty();
+        assertThat(snapshot.getVariables()).containsOnly(entry("amount", 42));
+    }
+
+    @Test
+    void shouldSnapshotJobs(final TestProcessEngine testProcessEngine) {
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Async_Process");
+
+        ProcessInstanceSnapshot snapshot = testProcessEngine.snapshot(processInstance.getId());
+
+        assertThat(snapshot.getJobs()).extracting(ProcessInstanceSnapshot.Job::getActivityId)
+                .containsExactly("StartEvent");
+        assertThat(snapshot.getTasks()).isEmpty();
+    }
+
+    @Test
+    void shouldSnapshotEndedProcessInstance(final TestProcessEngine testProcessEngine) {
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Example_Process");
+        testProcessEngine.getTaskService().complete(testProcessEngine.getTaskService().createTaskQuery()
+                                                            .singleResult().getId());
+
+        ProcessInstanceSnapshot snapshot = testProcessEngine.snapshot(processInstance.getId());
+
+        assertThat(snapshot.isEnded()).isTrue();
+        assertThat(snapshot.getActiveActivityIds()).isEmpty();
+    }
+
+    @Test
+    @QueryBudget
+    void shouldGatherStateWithOneQueryPerEntity(final TestProcessEngine testProcessEngine) {
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Example_Process");
+        long selectsBefore = testProcessEngine.getSqlStatementCounts().getSelects();
+
+        testProcessEngine.snapshot(processInstance.getId());
+
+        assertThat(selectsBefore).isPositive();
+        assertThat(testProcessEngine.getSqlStatementCounts().getSelects() - selectsBefore).isBetween(1L, 5L);
+    }
+
+    @Test
+    void shouldBeImmutable(final TestProcessEngine testProcessEngine) {
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Example_Process");
+
+        ProcessInstanceSnapshot snapshot = testProcessEngine.snapshot(processInstance.getId());
+
+        assertThatThrownBy(() -> snapshot.getTasks().clear()).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.getVariables().put("amount", 1))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    private static Map.Entry<String, Object> entry(final String key, final Object value) {
+        return new AbstractMap.SimpleImmutableEntry<>(key, value);
+    }
+
+}
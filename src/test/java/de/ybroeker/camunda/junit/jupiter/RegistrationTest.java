@@ -16,9 +16,13 @@
 package de.ybroeker.camunda.junit.jupiter;
 
 import de.ybroeker.camunda.junit.jupiter.TestProcessEngine.Registration;
+import de.ybroeker.camunda.junit.jupiter.impl.TestProcessEngineImpl;
 import org.camunda.bpm.application.impl.EmbeddedProcessApplication;
 import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
 import org.junit.jupiter.api.extension.ExtendWith;
 
 import static de.ybroeker.camunda.junit.jupiter.TestProcessApplicationUtil.processApplication;
@@ -26,9 +30,11 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 
 @ExtendWith(ProcessEngineExtension.class)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
 public class RegistrationTest {
 
     @Test
+    @Order(1)
     @SuppressWarnings("try")
     @Deployment(resources = "Example_Workflow.bpmn")
     void shouldUnregisterProcessApplication(final TestProcessEngine testProcessEngine) {
@@ -36,10 +42,34 @@ public class RegistrationTest {
 
         try (Registration r = testProcessEngine.registerProcessApplication(processApplication)) {
             testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+            assertThat(((TestProcessEngineImpl) testProcessEngine).getRegisteredDeploymentIds())
+                    .containsExactly(testProcessEngine.getDeploymentId());
         }
 
         assertThat(testProcessEngine.getProcessEngineConfiguration().getProcessApplicationManager().hasRegistrations())
                 .isFalse();
+        assertThat(((TestProcessEngineImpl) testProcessEngine).getRegisteredDeploymentIds()).isEmpty();
+    }
+
+    @Test
+    @Order(2)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldCacheProcessDefinition(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+    }
+
+    @Test
+    @Order(3)
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldKeepProcessDefinitionCachedWithoutRegistration(final TestProcessEngine testProcessEngine) {
+        final String processDefinitionId = testProcessEngine.getRepositoryService().createProcessDefinitionQuery()
+                .deploymentId(testProcessEngine.getDeploymentId())
+                .singleResult()
+                .getId();
+
+        assertThat(testProcessEngine.getProcessEngineConfiguration().getDeploymentCache()
+                           .findProcessDefinitionFromCache(processDefinitionId))
+                .isNotNull();
     }
 
 }
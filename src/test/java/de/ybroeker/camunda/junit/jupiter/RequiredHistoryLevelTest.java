@@ -0,0 +1,53 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import org.camunda.bpm.engine.ProcessEngineConfiguration;
+import org.camunda.bpm.engine.test.Deployment;
+import org.camunda.bpm.engine.test.RequiredHistoryLevel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@Deployment(resources = "Example_Workflow.bpmn")
+public class RequiredHistoryLevelTest {
+
+    @Test
+    @RequiredHistoryLevel(ProcessEngineConfiguration.HISTORY_NONE)
+    void shouldUseEngineWithoutHistory(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngineConfiguration().getHistoryLevel().getName())
+                .isEqualTo(ProcessEngineConfiguration.HISTORY_NONE);
+
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().count()).isZero();
+    }
+
+    @Test
+    @RequiredHistoryLevel(ProcessEngineConfiguration.HISTORY_FULL)
+    void shouldUseEngineWithFullHistory(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getProcessEngineConfiguration().getHistoryLevel().getName())
+                .isEqualTo(ProcessEngineConfiguration.HISTORY_FULL);
+
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        assertThat(testProcessEngine.getHistoryService().createHistoricProcessInstanceQuery().count()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import de.ybroeker.camunda.junit.jupiter.impl.SqlStatementCountsImpl;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@Deployment(resources = "Example_Workflow.bpmn")
+public class SqlStatementCountsTest {
+
+    @Test
+    @QueryBudget
+    void shouldCountStatementsOfTest(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getSqlStatementCounts().getTotal()).isZero();
+
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        final SqlStatementCounts counts = testProcessEngine.getSqlStatementCounts();
+        assertThat(counts.getInserts()).isPositive();
+        assertThat(counts.getCountsByStatementId().keySet()).anyMatch(id -> id.endsWith(".insertExecution"));
+        assertThat(counts.getTotal())
+                .isGreaterThanOrEqualTo(counts.getSelects() + counts.getInserts() + counts.getUpdates()
+                                                + counts.getDeletes());
+    }
+
+    @Test
+    void shouldNotCountWithoutBudget(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        assertThat(testProcessEngine.getSqlStatementCounts().getTotal()).isZero();
+    }
+
+    @Test
+    @QueryBudget(maxSelects = 100)
+    void shouldPassWithinBudget(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+    }
+
+    @Test
+    @QueryBudget
+    void shouldFailIfBudgetIsExceeded(final TestProcessEngine testProcessEngine) throws Exception {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Example_Process");
+
+        final QueryBudget budget = SqlStatementCountsTest.class.getDeclaredMethod("noInserts")
+                .getAnnotation(QueryBudget.class);
+        final SqlStatementCountsImpl counts = (SqlStatementCountsImpl) testProcessEngine.getSqlStatementCounts();
+        assertThatThrownBy(() -> counts.assertWithin(budget))
+                .isInstanceOf(AssertionError.class)
+                .hasMessageContaining("INSERT statements, budget is 0")
+                .hasMessageContaining("insertExecution");
+    }
+
+    @QueryBudget(maxInserts = 0)
+    private static void noInserts() {
+        //only holds the budget
+    }
+
+}
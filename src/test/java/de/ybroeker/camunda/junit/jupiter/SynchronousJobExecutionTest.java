@@ -0,0 +1,100 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@Deployment(resources = "Async_Workflow.bpmn")
+class SynchronousJobExecutionTest {
+
+    @Test
+    void shouldExecuteAvailableJobsInOnePass(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Async_Process");
+
+        assertThat(testProcessEngine.executeAllAvailableJobs()).isEqualTo(1);
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isEqualTo(1);
+        assertThat(testProcessEngine.executeAllAvailableJobs()).isEqualTo(1);
+        assertThat(testProcessEngine.getTaskService().createTaskQuery().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRunUntilWaitState(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Async_Process");
+
+        assertThat(testProcessEngine.runUntilWaitState()).isEqualTo(2);
+        assertThat(testProcessEngine.getTaskService().createTaskQuery().taskDefinitionKey("UserTask").count())
+                .isEqualTo(1);
+        assertThat(testProcessEngine.runUntilWaitState()).isZero();
+    }
+
+    @Test
+    void shouldNotExecuteTimersDueInTheFuture(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Async_Process");
+        testProcessEngine.runUntilWaitState();
+
+        testProcessEngine.getTaskService().complete(testProcessEngine.getTaskService().createTaskQuery()
+                                                            .singleResult().getId());
+
+        assertThat(testProcessEngine.runUntilWaitState()).isZero();
+        assertThat(testProcessEngine.getManagementService().createJobQuery().timers().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldExecuteJobsInline(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.setInlineJobExecution(true);
+
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Async_Process");
+
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isZero();
+        assertThat(testProcessEngine.getTaskService().createTaskQuery()
+                           .processInstanceId(processInstance.getId()).count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotExecuteJobsInlineAfterReadOnlyCommands(final TestProcessEngine testProcessEngine) {
+        ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                .startProcessInstanceByKey("Async_Process");
+        testProcessEngine.setInlineJobExecution(true);
+
+        testProcessEngine.snapshot(processInstance.getId());
+
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isEqualTo(1);
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isEqualTo(1);
+
+        testProcessEngine.getRuntimeService().setVariable(processInstance.getId(), "variable", "value");
+
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isZero();
+    }
+
+    @Test
+    void shouldNotExecuteJobsInlineIfDisabled(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.setInlineJobExecution(true);
+        testProcessEngine.setInlineJobExecution(false);
+
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Async_Process");
+
+        assertThat(testProcessEngine.getManagementService().createJobQuery().count()).isEqualTo(1);
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.MockExtensionContext;
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.MockParameterContext;
+import de.ybroeker.camunda.junit.jupiter.TestProcessExtensionTest.TestCase;
+import org.camunda.bpm.engine.ProcessEngine;
+import org.camunda.bpm.engine.impl.ProcessEngineImpl;
+import org.camunda.bpm.engine.impl.cfg.IdGenerator;
+import org.camunda.bpm.engine.runtime.ProcessInstance;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ParameterContext;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+class TenantIsolationTest {
+
+    @Test
+    void shouldIsolateConcurrentTestsOnSharedProcessEngine() throws Exception {
+        final int concurrentTests = 4;
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        Method testMethod = TestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
+        MockExtensionContext root = new MockExtensionContext(testMethod);
+        root.configurationParameters.put(ProcessEngineExtension.TENANT_ISOLATION_ENABLED_PROPERTY, "true");
+        CyclicBarrier allTestsRunning = new CyclicBarrier(concurrentTests);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentTests);
+        List<Future<TestProcessEngine>> results = new ArrayList<>();
+        for (int i = 0; i < concurrentTests; i++) {
+            results.add(executor.submit(() -> {
+                ExtensionContext extensionContext = new MockExtensionContext(testMethod, root);
+                processEngineExtension.beforeTestExecution(extensionContext);
+                try {
+                    ParameterContext parameterContext = new MockParameterContext(new TestCase(), testMethod.getParameters()[0]);
+                    TestProcessEngine testProcessEngine = (TestProcessEngine) processEngineExtension.resolveParameter(parameterContext, extensionContext);
+                    ProcessInstance processInstance = testProcessEngine.getRuntimeService()
+                            .startProcessInstanceByKey("Example_Process");
+                    allTestsRunning.await(1, TimeUnit.MINUTES);
+
+                    assertThat(processInstance.getTenantId()).isEqualTo(testProcessEngine.getTenantId());
+                    assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().list())
+                            .extracting(ProcessInstance::getId)
+                            .containsExactly(processInstance.getId());
+                    assertThat(testProcessEngine.getRepositoryService().createProcessDefinitionQuery().count())
+                            .isEqualTo(1);
+                    return testProcessEngine;
+                } finally {
+                    processEngineExtension.afterTestExecution(extensionContext);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        Set<ProcessEngine> processEngines = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<String> tenantIds = new HashSet<>();
+        for (Future<TestProcessEngine> result : results) {
+            TestProcessEngine testProcessEngine = result.get(5, TimeUnit.MINUTES);
+            processEngines.add(testProcessEngine.getProcessEngine());
+            tenantIds.add(testProcessEngine.getTenantId());
+        }
+
+        assertThat(processEngines).hasSize(1);
+        assertThat(tenantIds).hasSize(concurrentTests);
+        ProcessEngine processEngine = processEngines.iterator().next();
+        assertThat(processEngine.getRepositoryService().createDeploymentQuery().tenantIdIn(tenantIds.toArray(new String[0])).count())
+                .isZero();
+        assertThat(processEngine.getRuntimeService().createProcessInstanceQuery().tenantIdIn(tenantIds.toArray(new String[0])).count())
+                .isZero();
+    }
+
+    @Test
+    void shouldNotCountStatementsOnSharedProcessEngine() throws Exception {
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        Method testMethod = BudgetedTestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
+        MockExtensionContext extensionContext = new MockExtensionContext(testMethod);
+        extensionContext.configurationParameters.put(ProcessEngineExtension.TENANT_ISOLATION_ENABLED_PROPERTY, "true");
+
+        assertThatThrownBy(() -> processEngineExtension.beforeTestExecution(extensionContext))
+                .isInstanceOf(ExtensionConfigurationException.class)
+                .hasMessageContaining("exclusively leased");
+        processEngineExtension.afterTestExecution(extensionContext);
+    }
+
+    @Test
+    void shouldNotResetIdsOfSharedProcessEngine() throws Exception {
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        Method testMethod = TestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
+        MockExtensionContext root = new MockExtensionContext(testMethod);
+        root.configurationParameters.put(ProcessEngineExtension.TENANT_ISOLATION_ENABLED_PROPERTY, "true");
+        ExtensionContext first = new MockExtensionContext(testMethod, root);
+        ExtensionContext second = new MockExtensionContext(testMethod, root);
+        processEngineExtension.beforeTestExecution(first);
+        processEngineExtension.beforeTestExecution(second);
+        try {
+            ParameterContext parameterContext = new MockParameterContext(new TestCase(), testMethod.getParameters()[0]);
+            TestProcessEngine testProcessEngine = (TestProcessEngine) processEngineExtension.resolveParameter(parameterContext, second);
+            IdGenerator idGenerator = ((ProcessEngineImpl) testProcessEngine.getProcessEngine())
+                    .getProcessEngineConfiguration().getIdGenerator();
+            long id = Long.parseLong(idGenerator.getNextId());
+
+            processEngineExtension.afterTestExecution(first);
+
+            assertThat(Long.parseLong(idGenerator.getNextId())).isEqualTo(id + 1);
+        } finally {
+            processEngineExtension.afterTestExecution(second);
+        }
+    }
+
+    @Test
+    @Deployment(resources = "Example_Workflow.bpmn")
+    void shouldNotIsolateWithoutConfigurationParameter(final TestProcessEngine testProcessEngine) {
+        assertThat(testProcessEngine.getTenantId()).isNull();
+    }
+
+    static class BudgetedTestCase {
+        @Test
+        @QueryBudget(maxSelects = 10)
+        @Deployment(resources = "Example_Workflow.bpmn")
+        void test(final TestProcessEngine testProcessEngine) {
+        }
+    }
+
+}
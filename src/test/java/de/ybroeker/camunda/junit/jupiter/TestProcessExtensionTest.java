@@ -17,12 +17,17 @@ package de.ybroeker.camunda.junit.jupiter;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
+import de.ybroeker.camunda.junit.jupiter.impl.SynchronousJobExecution;
 import org.assertj.core.api.Assertions;
+import org.camunda.bpm.engine.ProcessEngine;
 import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.extension.*;
@@ -30,6 +35,19 @@ import org.junit.jupiter.api.extension.*;
 
 class TestProcessExtensionTest {
 
+    /**
+     * Contexts created by the test, closed in reverse order of creation after the test, like JUnit does.
+     */
+    private final List<MockExtensionContext> extensionContexts = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void closeExtensionContexts() throws Throwable {
+        final List<MockExtensionContext> children = new ArrayList<>(extensionContexts);
+        Collections.reverse(children);
+        for (MockExtensionContext extensionContext : children) {
+            extensionContext.close();
+        }
+    }
 
     @Test
     void shouldUseDifferentProcessEnginesOnDifferentThreads() throws Exception {
@@ -37,9 +55,10 @@ class TestProcessExtensionTest {
         AtomicReference<TestProcessEngine> secondTestProcessEngine = new AtomicReference<>();
 
         ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        ExtensionContext root = extensionContext(TestCase.class.getDeclaredMethod("test", TestProcessEngine.class), null);
 
-        Thread firstTest = new Thread(testExecution(processEngineExtension, firstTestProcessEngine));
-        Thread secondTest = new Thread(testExecution(processEngineExtension, secondTestProcessEngine));
+        Thread firstTest = new Thread(testExecution(processEngineExtension, root, firstTestProcessEngine));
+        Thread secondTest = new Thread(testExecution(processEngineExtension, root, secondTestProcessEngine));
 
         firstTest.start();
         secondTest.start();
@@ -53,11 +72,134 @@ class TestProcessExtensionTest {
                 .isNotSameAs(secondTestProcessEngine.get().getProcessEngine());
     }
 
+    @Test
+    void shouldIsolateConcurrentTests() throws Exception {
+        final int concurrentTests = 4;
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        Method testMethod = TestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
+        ExtensionContext root = extensionContext(testMethod, null);
+        CyclicBarrier allTestsRunning = new CyclicBarrier(concurrentTests);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentTests);
+        List<Future<TestProcessEngine>> results = new ArrayList<>();
+        for (int i = 0; i < concurrentTests; i++) {
+            results.add(executor.submit(() -> {
+                ExtensionContext extensionContext = extensionContext(testMethod, root);
+                processEngineExtension.beforeTestExecution(extensionContext);
+                try {
+                    ParameterContext parameterContext = new MockParameterContext(new TestCase(), testMethod.getParameters()[0]);
+                    TestProcessEngine testProcessEngine = (TestProcessEngine) processEngineExtension.resolveParameter(parameterContext, extensionContext);
+                    testProcessEngine.manageDeployment(testProcessEngine.getRepositoryService().createDeployment()
+                                                               .addClasspathResource("Example_Workflow.bpmn")
+                                                               .deploy());
+                    allTestsRunning.await(1, TimeUnit.MINUTES);
+                    return testProcessEngine;
+                } finally {
+                    processEngineExtension.afterTestExecution(extensionContext);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        Set<ProcessEngine> processEngines = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Future<TestProcessEngine> result : results) {
+            TestProcessEngine testProcessEngine = result.get(5, TimeUnit.MINUTES);
+            processEngines.add(testProcessEngine.getProcessEngine());
+            Assertions.assertThat(testProcessEngine.getRepositoryService().createDeploymentQuery().list())
+                    .extracting(org.camunda.bpm.engine.repository.Deployment::getId)
+                    .containsExactly(testProcessEngine.getDeploymentId());
+        }
+
+        Assertions.assertThat(processEngines).hasSize(concurrentTests);
+    }
+
+    @Test
+    void shouldDisableInlineJobExecutionAfterTestWithoutDeployment() throws Exception {
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        ExtensionContext extensionContext = extensionContext(
+                UndeployedTestCase.class.getDeclaredMethod("test", TestProcessEngine.class), null);
+        SynchronousJobExecution.setInline(true);
+
+        processEngineExtension.afterTestExecution(extensionContext);
+
+        Assertions.assertThat(SynchronousJobExecution.isInline()).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void shouldManageDeploymentsOnlyWhileTestIsRunning() throws Exception {
+        ProcessEngineExtension processEngineExtension = new ProcessEngineExtension();
+        Method testMethod = TestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
+        ExtensionContext extensionContext = extensionContext(testMethod, null);
+        processEngineExtension.beforeTestExecution(extensionContext);
+        TestProcessEngine testProcessEngine = (TestProcessEngine) processEngineExtension.resolveParameter(
+                new MockParameterContext(new TestCase(), testMethod.getParameters()[0]), extensionContext);
+        org.camunda.bpm.engine.repository.Deployment deployment = testProcessEngine.getRepositoryService()
+                .createDeployment()
+                .addClasspathResource("Example_Workflow.bpmn")
+                .deploy();
+        try {
+            processEngineExtension.manageDeployment(deployment);
+        } finally {
+            processEngineExtension.afterTestExecution(extensionContext);
+        }
+
+        Assertions.assertThat(testProcessEngine.getRepositoryService().createDeploymentQuery()
+                                      .deploymentId(deployment.getId()).count()).isZero();
+        Assertions.assertThatThrownBy(() -> processEngineExtension.manageDeployment(deployment))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldProvideDefaultsForOtherImplementations() {
+        TestProcessEngine testProcessEngine = new TestProcessEngine() {
+            @Override
+            public ProcessEngine getProcessEngine() {
+                return null;
+            }
+
+            @Override
+            public String getDeploymentId() {
+                return null;
+            }
+
+            @Override
+            public org.camunda.bpm.engine.repository.Deployment getDeployment() {
+                return null;
+            }
+        };
+
+        Assertions.assertThat(testProcessEngine.getTenantId()).isNull();
+        testProcessEngine.authenticateTenant();
+        Assertions.assertThatThrownBy(() -> testProcessEngine.manageDeployment(null))
+                .isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThatThrownBy(testProcessEngine::getSqlStatementCounts)
+                .isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThatThrownBy(() -> testProcessEngine.setInlineJobExecution(true))
+                .isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThatThrownBy(testProcessEngine::runUntilWaitState)
+                .isInstanceOf(UnsupportedOperationException.class);
+        Assertions.assertThatThrownBy(() -> testProcessEngine.advanceClockBy(Duration.ZERO))
+                .isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    /**
+     * Creates a context which is closed after the test, a root context if {@code root} is {@code null}.
+     */
+    private ExtensionContext extensionContext(final Method method, final ExtensionContext root) {
+        final MockExtensionContext extensionContext = root == null
+                ? new MockExtensionContext(method)
+                : new MockExtensionContext(method, root);
+        extensionContexts.add(extensionContext);
+        return extensionContext;
+    }
+
     private Runnable testExecution(final ProcessEngineExtension processEngineExtension,
+                                   final ExtensionContext root,
                                    final AtomicReference<TestProcessEngine> parameterStore)
             throws NoSuchMethodException {
         Method testMethod = TestCase.class.getDeclaredMethod("test", TestProcessEngine.class);
-        ExtensionContext mockExtensionContext = new MockExtensionContext(testMethod);
+        ExtensionContext mockExtensionContext = extensionContext(testMethod, root);
 
         return () -> {
             try {
@@ -75,22 +217,32 @@ class TestProcessExtensionTest {
     static class MockExtensionContext implements ExtensionContext {
         UUID uuid = UUID.randomUUID();
 
-        Store mockStore = new MockStore();
+        Map<Namespace, Store> mockStores = new ConcurrentHashMap<>();
+
+        Map<String, String> configurationParameters = new ConcurrentHashMap<>();
 
         Method method;
 
+        ExtensionContext root;
+
         public MockExtensionContext(final Method method) {
             this.method = method;
+            this.root = this;
+        }
+
+        public MockExtensionContext(final Method method, final ExtensionContext root) {
+            this.method = method;
+            this.root = root;
         }
 
         @Override
         public Optional<ExtensionContext> getParent() {
-            return Optional.empty();
+            return root == this ? Optional.empty() : Optional.of(root);
         }
 
         @Override
         public ExtensionContext getRoot() {
-            return this;
+            return root;
         }
 
         @Override
@@ -146,7 +298,10 @@ class TestProcessExtensionTest {
 
         @Override
         public Optional<String> getConfigurationParameter(final String key) {
-            return Optional.empty();
+            if (root != this) {
+                return root.getConfigurationParameter(key);
+            }
+            return Optional.ofNullable(configurationParameters.get(key));
         }
 
         @Override
@@ -156,8 +311,17 @@ class TestProcessExtensionTest {
 
         @Override
         public Store getStore(final Namespace namespace) {
-            //TODO: namespace
-            return mockStore;
+            return mockStores.computeIfAbsent(namespace, key -> new MockStore());
+        }
+
+        /**
+         * Closes the resources of all stores, like JUnit does when the context is closed.
+         */
+        void close() throws Throwable {
+            for (Store store : mockStores.values()) {
+                ((MockStore) store).close();
+            }
+            mockStores.clear();
         }
     }
 
@@ -207,7 +371,7 @@ class TestProcessExtensionTest {
 
     static class MockStore implements ExtensionContext.Store {
 
-        private Map<Object, Object> map = new HashMap<>();
+        private Map<Object, Object> map = new ConcurrentHashMap<>();
 
         @Override
         public Object get(final Object key) {
@@ -245,6 +409,15 @@ class TestProcessExtensionTest {
         public <V> V remove(final Object key, final Class<V> requiredType) {
             return requiredType.cast(map.remove(key));
         }
+
+        void close() throws Throwable {
+            for (Object value : map.values()) {
+                if (value instanceof CloseableResource) {
+                    ((CloseableResource) value).close();
+                }
+            }
+            map.clear();
+        }
     }
 
     static class TestCase {
@@ -254,4 +427,10 @@ class TestProcessExtensionTest {
         }
     }
 
+    static class UndeployedTestCase {
+        @Test
+        void test(final TestProcessEngine testProcessEngine) {
+        }
+    }
+
 }
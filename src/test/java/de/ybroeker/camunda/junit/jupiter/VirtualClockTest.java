@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package de.ybroeker.camunda.junit.jupiter;
+
+import java.time.Duration;
+import java.util.*;
+
+import org.camunda.bpm.engine.delegate.ExecutionListener;
+import org.camunda.bpm.engine.impl.util.ClockUtil;
+import org.camunda.bpm.engine.test.Deployment;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.parallel.ResourceLock;
+
+import static de.ybroeker.camunda.junit.jupiter.TestProcessApplicationUtil.processApplication;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+@ExtendWith(ProcessEngineExtension.class)
+@ResourceLock(ProcessEngineExtension.CLOCK_RESOURCE)
+@Deployment(resources = "Timer_Workflow.bpmn")
+class VirtualClockTest {
+
+    @Test
+    @SuppressWarnings("try")
+    void shouldFireDueTimersInOrderOfDueDates(final TestProcessEngine testProcessEngine) {
+        final EventRecorder recorder = new EventRecorder();
+        final Date start = new Date(0);
+        testProcessEngine.setCurrentTime(start);
+
+        try (TestProcessEngine.Registration r = testProcessEngine.registerProcessApplication(processApplication(recorder))) {
+            testProcessEngine.getRuntimeService().startProcessInstanceByKey("Timer_Process");
+
+            assertThat(testProcessEngine.advanceClockBy(Duration.ofDays(365))).isEqualTo(4);
+        }
+
+        assertThat(recorder.query().type(ExecutionListener.EVENTNAME_END).activityIds())
+                .containsSubsequence("Reminded", "Reminded", "Reminded", "Escalated");
+        assertThat(testProcessEngine.getRuntimeService().createProcessInstanceQuery().count()).isZero();
+        assertThat(ClockUtil.getCurrentTime()).isEqualTo(new Date(start.getTime() + Duration.ofDays(365).toMillis()));
+    }
+
+    @Test
+    void shouldNotFireTimersDueLater(final TestProcessEngine testProcessEngine) {
+        testProcessEngine.setCurrentTime(new Date(0));
+        testProcessEngine.getRuntimeService().startProcessInstanceByKey("Timer_Process");
+
+        assertThat(testProcessEngine.advanceClockBy(Duration.ofDays(29))).isZero();
+        assertThat(testProcessEngine.advanceClockBy(Duration.ofDays(1))).isEqualTo(1);
+        assertThat(testProcessEngine.getTaskService().createTaskQuery().count()).isEqualTo(1);
+        assertThat(testProcessEngine.getManagementService().createJobQuery().timers().count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRejectNegativeDuration(final TestProcessEngine testProcessEngine) {
+        assertThatThrownBy(() -> testProcessEngine.advanceClockBy(Duration.ofSeconds(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}